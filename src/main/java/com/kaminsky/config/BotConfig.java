@@ -7,6 +7,8 @@ import org.springframework.context.annotation.PropertySource;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.annotation.EnableScheduling;
 
+import java.util.List;
+
 @Configuration
 @EnableScheduling
 @EnableAsync
@@ -25,4 +27,136 @@ public class BotConfig {
 
     @Value("${bot.id}")
     Long botId;
+
+    @Value("${bot.dispatcher.stripes}")
+    int dispatcherStripes;
+
+    @Value("${bot.dispatcher.queue-capacity}")
+    int dispatcherQueueCapacity;
+
+    @Value("${bot.dispatcher.shutdown-await-seconds}")
+    long dispatcherShutdownAwaitSeconds;
+
+    @Value("${bot.ingestion.drop-normal-when-full}")
+    boolean ingestionDropNormalWhenFull;
+
+    @Value("${bot.ingestion.shed-threshold}")
+    int ingestionShedThreshold;
+
+    @Value("${bot.ingestion.cosmetic-max-lag-seconds}")
+    long ingestionCosmeticMaxLagSeconds;
+
+    @Value("${bot.outbound.threads}")
+    int outboundThreads;
+
+    @Value("${bot.outbound.timeout-seconds}")
+    long outboundTimeoutSeconds;
+
+    @Value("${bot.outbound.queue-capacity}")
+    int outboundQueueCapacity;
+
+    @Value("${bot.outbound.global-per-second}")
+    double outboundGlobalPerSecond;
+
+    @Value("${bot.outbound.group-per-minute}")
+    double outboundGroupPerMinute;
+
+    @Value("${bot.outbound.private-per-second}")
+    double outboundPrivatePerSecond;
+
+    @Value("${bot.outbound.shed-threshold}")
+    int outboundShedThreshold;
+
+    @Value("${bot.outbound.cosmetic-max-age-seconds}")
+    long outboundCosmeticMaxAgeSeconds;
+
+    @Value("${bot.messages.ring-capacity}")
+    int messageRingCapacity;
+
+    @Value("${bot.messages.max-age-hours}")
+    long messageMaxAgeHours;
+
+    @Value("${bot.messages.pending-user-ttl-minutes}")
+    long pendingUserTtlMinutes;
+
+    @Value("${bot.messages.pending-user-max-messages}")
+    int pendingUserMaxMessages;
+
+    @Value("${bot.cache.local-ttl-seconds}")
+    long cacheLocalTtlSeconds;
+
+    @Value("${bot.cache.local-max-size}")
+    long cacheLocalMaxSize;
+
+    @Value("${bot.admins.ttl-minutes}")
+    long adminsTtlMinutes;
+
+    @Value("${bot.members.status-ttl-seconds}")
+    long memberStatusTtlSeconds;
+
+    @Value("${bot.captcha.timeout-seconds}")
+    long captchaTimeoutSeconds;
+
+    @Value("${bot.banned-users.ttl-seconds}")
+    long bannedUsersTtlSeconds;
+
+    @Value("${bot.conversation.ttl-minutes}")
+    long conversationTtlMinutes;
+
+    @Value("${bot.conversation.redis-enabled}")
+    boolean conversationRedisEnabled;
+
+    @Value("${bot.raid.join-threshold}")
+    int raidJoinThreshold;
+
+    @Value("${bot.raid.window-seconds}")
+    long raidWindowSeconds;
+
+    @Value("${bot.raid.batch-seconds}")
+    long raidBatchSeconds;
+
+    @Value("${bot.raid.max-batch-size}")
+    int raidMaxBatchSize;
+
+    @Value("${bot.updates.allowed}")
+    List<String> allowedUpdates;
+
+    @Value("${bot.updates.limit}")
+    int updatesLimit;
+
+    @Value("${bot.updates.timeout-seconds}")
+    int updatesTimeoutSeconds;
+
+    @Value("${bot.dedup.window-size}")
+    int dedupWindowSize;
+
+    @Value("${bot.dedup.callback-ids}")
+    int dedupCallbackIds;
+
+    @Value("${bot.dedup.redis-enabled}")
+    boolean dedupRedisEnabled;
+
+    @Value("${bot.dedup.redis-ttl-seconds}")
+    long dedupRedisTtlSeconds;
+
+    @Value("${bot.webhook.enabled}")
+    boolean webhookEnabled;
+
+    @Value("${bot.webhook.url}")
+    String webhookUrl;
+
+    @Value("${bot.webhook.path}")
+    String webhookPath;
+
+    @Value("${bot.webhook.port}")
+    int webhookPort;
+
+    @Value("${bot.webhook.secret-token}")
+    String webhookSecretToken;
+
+    @Value("${bot.webhook.queue-capacity}")
+    int webhookQueueCapacity;
+
+    @Value("${bot.webhook.max-connections}")
+    int webhookMaxConnections;
 }
@@ -1,15 +1,19 @@
 package com.kaminsky.config;
 
 import com.kaminsky.service.TelegramBot;
+import com.kaminsky.service.WebhookReceiver;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
 
+import java.io.IOException;
+
 @Slf4j
 @Component
 public class BotInitializer {
@@ -17,8 +21,18 @@ public class BotInitializer {
     @Autowired
     TelegramBot bot;
 
+    @Autowired
+    BotConfig config;
+
+    @Autowired
+    WebhookReceiver webhookReceiver;
+
     @EventListener({ContextRefreshedEvent.class})
     public void init() throws TelegramApiException {
+        if (config.isWebhookEnabled()) {
+            initWebhook();
+            return;
+        }
         TelegramBotsApi telegramBotsApi = new TelegramBotsApi(DefaultBotSession.class);
         try {
             telegramBotsApi.registerBot(bot);
@@ -26,4 +40,20 @@ public class BotInitializer {
         log.error("Ошибка: " + e.getMessage());
         }
     }
+
+    private void initWebhook() {
+        try {
+            // сервер поднимаем до setWebhook, чтобы первые обновления не получили отказ
+            webhookReceiver.start(bot::onUpdateReceived);
+            bot.execute(SetWebhook.builder()
+                    .url(config.getWebhookUrl())
+                    .secretToken(config.getWebhookSecretToken())
+                    .maxConnections(config.getWebhookMaxConnections())
+                    .allowedUpdates(config.getAllowedUpdates())
+                    .build());
+            log.info("Вебхук зарегистрирован: {}", config.getWebhookUrl());
+        } catch (IOException | TelegramApiException e) {
+            log.error("Не удалось включить вебхук: {}", e.getMessage());
+        }
+    }
 }
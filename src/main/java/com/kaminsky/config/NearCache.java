@@ -0,0 +1,151 @@
+package com.kaminsky.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Двухуровневый кэш: локальная копия в памяти процесса поверх кэша в Redis.
+ * Изменения записываются в Redis, остальные экземпляры узнают о них через {@link NearCacheManager}.
+ */
+public class NearCache implements org.springframework.cache.Cache {
+
+    private final org.springframework.cache.Cache remote;
+    private final Cache<String, ValueWrapper> local;
+    private final NearCacheManager manager;
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    NearCache(org.springframework.cache.Cache remote, Cache<String, ValueWrapper> local, NearCacheManager manager) {
+        this.remote = remote;
+        this.local = local;
+        this.manager = manager;
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String localKey = localKey(key);
+        ValueWrapper wrapper = local.getIfPresent(localKey);
+        if (wrapper != null) {
+            localHits.increment();
+            return wrapper;
+        }
+        wrapper = remote.get(key);
+        if (wrapper != null) {
+            remoteHits.increment();
+            local.put(localKey, new SimpleValueWrapper(wrapper.get()));
+        } else {
+            misses.increment();
+        }
+        return wrapper;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper == null) {
+            return null;
+        }
+        Object value = wrapper.get();
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Значение в кэше " + getName() + " не является " + type.getName());
+        }
+        return (T) value;
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper wrapper = get(key);
+        if (wrapper != null) {
+            @SuppressWarnings("unchecked")
+            T value = (T) wrapper.get();
+            return value;
+        }
+        T value = remote.get(key, valueLoader);
+        local.put(localKey(key), new SimpleValueWrapper(value));
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        local.put(localKey(key), new SimpleValueWrapper(value));
+        manager.publishInvalidation(getName(), localKey(key));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        if (existing == null) {
+            local.put(localKey(key), new SimpleValueWrapper(value));
+            manager.publishInvalidation(getName(), localKey(key));
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        local.invalidate(localKey(key));
+        manager.publishInvalidation(getName(), localKey(key));
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        boolean present = remote.evictIfPresent(key);
+        local.invalidate(localKey(key));
+        manager.publishInvalidation(getName(), localKey(key));
+        return present;
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        manager.publishInvalidation(getName(), null);
+    }
+
+    void invalidateLocal(String key) {
+        if (key == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(key);
+        }
+    }
+
+    long getLocalHits() {
+        return localHits.sum();
+    }
+
+    long getRemoteHits() {
+        return remoteHits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getLocalSize() {
+        return local.estimatedSize();
+    }
+
+    // RedisCache сам приводит ключи к строке, локальный уровень делает так же,
+    // чтобы ключ из сообщения об инвалидации совпадал с исходным
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+}
@@ -0,0 +1,92 @@
+package com.kaminsky.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Оборачивает кэши Redis в {@link NearCache}. Записи и удаления рассылаются через pub/sub Redis,
+ * чтобы другие экземпляры бота сбросили свою локальную копию.
+ */
+@Slf4j
+public class NearCacheManager implements CacheManager {
+
+    public static final String INVALIDATION_CHANNEL = "sokrytbot:cache-invalidation";
+    private static final String SEPARATOR = "|";
+
+    private final CacheManager remoteCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final Duration localTtl;
+    private final long localMaxSize;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, NearCache> caches = new ConcurrentHashMap<>();
+
+    public NearCacheManager(CacheManager remoteCacheManager, StringRedisTemplate redisTemplate,
+                            Duration localTtl, long localMaxSize) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.localTtl = localTtl;
+        this.localMaxSize = localMaxSize;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        NearCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, cacheName -> new NearCache(remote,
+                Caffeine.newBuilder()
+                        .expireAfterWrite(localTtl)
+                        .maximumSize(localMaxSize)
+                        .build(),
+                this));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remoteCacheManager.getCacheNames();
+    }
+
+    void publishInvalidation(String cacheName, String key) {
+        String message = instanceId + SEPARATOR + cacheName + SEPARATOR + (key == null ? "" : key);
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, message);
+        } catch (RuntimeException e) {
+            // локальная копия все равно истечет по TTL
+            log.error("Не удалось разослать инвалидацию кэша {}: {}", cacheName, e.getMessage());
+        }
+    }
+
+    public void onInvalidation(String message) {
+        String[] parts = message.split("\\|", 3);
+        if (parts.length < 3 || instanceId.equals(parts[0])) {
+            return;
+        }
+        NearCache cache = caches.get(parts[1]);
+        if (cache != null) {
+            cache.invalidateLocal(parts[2].isEmpty() ? null : parts[2]);
+        }
+    }
+
+    @Scheduled(fixedRate = 300000)
+    public void logStatistics() {
+        for (NearCache cache : caches.values()) {
+            log.info("Кэш {}: локальных попаданий {}, попаданий в Redis {}, промахов {}, локально записей {}",
+                    cache.getName(), cache.getLocalHits(), cache.getRemoteHits(), cache.getMisses(), cache.getLocalSize());
+        }
+    }
+}
@@ -9,7 +9,6 @@ import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 import com.kaminsky.model.BotMessage;
 import com.kaminsky.model.ChatInfo;
 import com.kaminsky.model.User;
-import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.cache.interceptor.KeyGenerator;
 import org.springframework.context.annotation.Bean;
@@ -18,11 +17,15 @@ import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
@@ -38,7 +41,28 @@ public class RedisConfig {
     }
 
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory) {
+    public NearCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                         StringRedisTemplate stringRedisTemplate,
+                                         BotConfig botConfig) {
+        RedisCacheManager redisCacheManager = redisCacheManager(redisConnectionFactory);
+        // менеджер Redis не является бином, поэтому кэши из конфигурации загружаем вручную
+        redisCacheManager.afterPropertiesSet();
+        return new NearCacheManager(redisCacheManager, stringRedisTemplate,
+                Duration.ofSeconds(botConfig.getCacheLocalTtlSeconds()), botConfig.getCacheLocalMaxSize());
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListener(RedisConnectionFactory redisConnectionFactory,
+                                                                   NearCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> cacheManager.onInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(NearCacheManager.INVALIDATION_CHANNEL));
+        return container;
+    }
+
+    private RedisCacheManager redisCacheManager(RedisConnectionFactory redisConnectionFactory) {
         ObjectMapper objectMapper = new ObjectMapper();
         objectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
 
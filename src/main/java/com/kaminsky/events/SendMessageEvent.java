@@ -1,15 +0,0 @@
-package com.kaminsky.events;
-
-import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-
-public class SendMessageEvent {
-    private final SendMessage sendMessage;
-
-    public SendMessageEvent(SendMessage sendMessage) {
-        this.sendMessage = sendMessage;
-    }
-
-    public SendMessage getSendMessage() {
-        return sendMessage;
-    }
-}
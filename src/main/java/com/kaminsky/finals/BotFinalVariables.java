@@ -8,6 +8,7 @@ public final class BotFinalVariables {
     public static final String WELCOME_TEXT_BUTTON = "WELCOME_TEXT_BUTTON";
     public static final String RECURRENT_TEXT_BUTTON = "RECURRENT_TEXT_BUTTON";
     public static final String CONFIRM_BUTTON = "CONFIRM_BUTTON";
+    public static final String RAID_CONFIRM_BUTTON = "RAID_CONFIRM_BUTTON";
     public static final String UNMUTE_BUTTON = "UNMUTE_BUTTON";
     public static final String KEYS_BUTTON = "KEYS_BUTTON";
     public static final String WIPE_KEYS_BUTTON = "WIPE_KEYS_BUTTON";
@@ -0,0 +1,37 @@
+package com.kaminsky.finals;
+
+import com.kaminsky.util.MessageTemplate;
+
+import static com.kaminsky.util.MessageTemplate.Escaping.HTML;
+import static com.kaminsky.util.MessageTemplate.Escaping.MARKDOWN_V2;
+import static com.kaminsky.util.MessageTemplate.Escaping.NONE;
+
+public final class MessageTemplates {
+
+    private MessageTemplates() {
+    }
+
+    private static final String USER_LINK = "<a href=\"tg://user?id={id}\">{name}</a>";
+    private static final String CAPTCHA_PROMPT_TEXT = ", нажмите кнопку в течение {timeout}, чтобы войти в чат";
+
+    public static final MessageTemplate GREETING = MessageTemplate.compile("Доброго здоровья, {name}! :smiley:", NONE);
+    public static final MessageTemplate CONFIRM_BUTTON_TEXT = MessageTemplate.compile(":point_right:Я не бот:point_left:", NONE);
+
+    public static final MessageTemplate CAPTCHA = MessageTemplate.compile(USER_LINK + CAPTCHA_PROMPT_TEXT, HTML);
+    public static final MessageTemplate CAPTCHA_PROMPT = MessageTemplate.compile(CAPTCHA_PROMPT_TEXT, NONE);
+    public static final MessageTemplate USER_LINK_HTML = MessageTemplate.compile(USER_LINK, HTML);
+    public static final MessageTemplate WELCOME_HEADER = MessageTemplate.compile(
+            "Добро пожаловать, [{name}](tg://user?id={id})\n", MARKDOWN_V2);
+    public static final MessageTemplate FAREWELL = MessageTemplate.compile("Всего хорошего, " + USER_LINK, HTML);
+
+    public static final MessageTemplate BANNED = MessageTemplate.compile(USER_LINK + " уничтожен", HTML);
+    public static final MessageTemplate WARNED = MessageTemplate.compile(USER_LINK + " предупрежден. \n" +
+            "Количество предупреждений: {warns} из 3", HTML);
+    public static final MessageTemplate WARNS_CHECKED = MessageTemplate.compile("Пользователь " + USER_LINK + " " +
+            "Количество предупреждений: {warns} из 3", HTML);
+    public static final MessageTemplate WARNS_RESET = MessageTemplate.compile("Предупреждения сброшены\n" +
+            "Пользователь " + USER_LINK + "\n" +
+            "Количество предупреждений: {warns} из 3", HTML);
+    public static final MessageTemplate MUTED = MessageTemplate.compile(USER_LINK + " обеззвучен на сутки", HTML);
+    public static final MessageTemplate UNMUTED = MessageTemplate.compile("Все ограничения сняты с пользователя " + USER_LINK, HTML);
+}
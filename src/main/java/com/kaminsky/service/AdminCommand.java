@@ -0,0 +1,23 @@
+package com.kaminsky.service;
+
+/**
+ * Команды администратора, которые отправляются ответом на сообщение нарушителя.
+ */
+public enum AdminCommand {
+    BAN("/ban"),
+    MUTE("/mute"),
+    UNMUTE("/unmute"),
+    WARN("/warn"),
+    CHECK("/check"),
+    RESET("/reset");
+
+    private final String command;
+
+    AdminCommand(String command) {
+        this.command = command;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+}
@@ -2,6 +2,7 @@ package com.kaminsky.service;
 
 import com.kaminsky.config.BotConfig;
 import com.kaminsky.finals.BotFinalVariables;
+import com.kaminsky.finals.MessageTemplates;
 import com.kaminsky.model.ChatInfo;
 import com.kaminsky.model.User;
 import com.kaminsky.model.repositories.ChatInfoRepository;
@@ -11,22 +12,18 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.methods.groupadministration.BanChatMember;
-import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatMember;
 import org.telegram.telegrambots.meta.api.methods.groupadministration.RestrictChatMember;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 import org.telegram.telegrambots.meta.api.objects.ChatPermissions;
 import org.telegram.telegrambots.meta.api.objects.Message;
-import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMember;
-import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMemberBanned;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 
 import java.sql.Timestamp;
 import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
@@ -36,29 +33,34 @@ public class AdminService {
     private final MessageService messageService;
     private final ChatAdminService chatAdminService;
     private final UserService userService;
-    private final SchedulerService schedulerService;
     private final BotConfig botConfig;
     private final ChatInfoRepository chatInfoRepository;
     private final KeyWordRepository keyWordRepository;
+    private final KeyWordMatcher keyWordMatcher;
+    private final MemberStatusService memberStatusService;
+    private final ConversationStateService conversationStateService;
 
     @Autowired
     public AdminService(UserRepository userRepository,
                         MessageService messageService,
                         ChatAdminService chatAdminService,
                         UserService userService,
-                        SchedulerService schedulerService,
-                        BotConfig botConfig, ChatInfoRepository chatInfoRepository, KeyWordRepository keyWordRepository) {
+                        BotConfig botConfig, ChatInfoRepository chatInfoRepository, KeyWordRepository keyWordRepository,
+                        KeyWordMatcher keyWordMatcher, MemberStatusService memberStatusService,
+                        ConversationStateService conversationStateService) {
         this.userRepository = userRepository;
         this.messageService = messageService;
         this.chatAdminService = chatAdminService;
         this.userService = userService;
-        this.schedulerService = schedulerService;
         this.botConfig = botConfig;
         this.chatInfoRepository = chatInfoRepository;
         this.keyWordRepository = keyWordRepository;
+        this.keyWordMatcher = keyWordMatcher;
+        this.memberStatusService = memberStatusService;
+        this.conversationStateService = conversationStateService;
     }
 
-    public void handleAdminCommandWithReply(Long chatId, Long commandSenderId, String command, Message message) {
+    public void handleAdminCommandWithReply(Long chatId, Long commandSenderId, AdminCommand command, Message message) {
         if (!chatAdminService.isAdmin(chatId, commandSenderId)) {
             messageService.sendMessage(chatId, BotFinalVariables.NOT_AN_ADMIN_ERROR, message.getMessageId());
             return;
@@ -67,30 +69,15 @@ public class AdminService {
             messageService.sendMessage(chatId, "Команда должна быть ответом на сообщение", message.getMessageId());
             return;
         }
-            Long objectId = message.getReplyToMessage().getFrom().getId();
-            String objectName = message.getReplyToMessage().getFrom().getFirstName();
+        Long objectId = message.getReplyToMessage().getFrom().getId();
+        String objectName = message.getReplyToMessage().getFrom().getFirstName();
         switch (command) {
-            case "/ban@sokrytbot":
-                banUser(chatId, commandSenderId, objectId, objectName, message);
-                break;
-            case "/mute@sokrytbot":
-                muteUser(chatId, objectId, objectName, message);
-                break;
-            case "/unmute@sokrytbot":
-                unmuteUser(chatId, objectId, objectName, message);
-                break;
-            case "/warn@sokrytbot":
-                warnUser(chatId, commandSenderId, objectId, objectName, message);
-                break;
-            case "/check@sokrytbot":
-                checkWarns(chatId, objectId, objectName, message);
-                break;
-            case "/reset@sokrytbot":
-                resetWarns(chatId, objectId, objectName, message);
-                break;
-            default:
-                messageService.sendMessage(chatId, BotFinalVariables.UNKNOWN_COMMAND);
-                break;
+            case BAN -> banUser(chatId, commandSenderId, objectId, objectName, message);
+            case MUTE -> muteUser(chatId, objectId, objectName, message);
+            case UNMUTE -> unmuteUser(chatId, objectId, objectName, message);
+            case WARN -> warnUser(chatId, commandSenderId, objectId, objectName, message);
+            case CHECK -> checkWarns(chatId, objectId, objectName, message);
+            case RESET -> resetWarns(chatId, objectId, objectName, message);
         }
     }
 
@@ -98,9 +85,7 @@ public class AdminService {
         configCommandReceived(chatId, message.getChat().getId(), botConfig.getBotId());
     }
 
-    public void handleSetWelcomeText(CallbackQuery callbackQuery) {
-        String callbackData = callbackQuery.getData();
-        Long targetChatId = Long.parseLong(callbackData.split(":")[1]);
+    public void handleSetWelcomeText(CallbackQuery callbackQuery, Long targetChatId) {
         Long chatId = callbackQuery.getMessage().getChatId();
 
         String helpMessageText = "Пришлите приветственное сообщение. Примеры:\n\n" +
@@ -120,8 +105,7 @@ public class AdminService {
                 "__Этот текст будет подчеркнут__";
 
         messageService.sendMessage(chatId, helpMessageText);
-        userService.setAwaitingWelcomeText(true);
-        userService.setCurrentChatIdForWelcomeText(targetChatId);
+        conversationStateService.start(callbackQuery.getFrom().getId(), ConversationStateService.Step.WELCOME_TEXT, targetChatId);
         messageService.executeDeleteMessage(new DeleteMessage(
                 String.valueOf(chatId), callbackQuery.getMessage().getMessageId()));
     }
@@ -131,11 +115,10 @@ public class AdminService {
             InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
             List<List<InlineKeyboardButton>> rows = new ArrayList<>();
             List<Long> menuChatIds = new ArrayList<>();
-            for (Map.Entry<Long, List<Long>> entry : chatAdminService.getChatAdministrators().entrySet()) {
-                Long key = entry.getKey();
-                List<Long> adminList = entry.getValue();
-                if (adminList.contains(userId) && (adminList.contains(botId))) {
-                    menuChatIds.add(key);
+            Set<Long> botChatIds = chatAdminService.getAdministeredChats(botId);
+            for (Long adminChatId : chatAdminService.getAdministeredChats(userId)) {
+                if (botChatIds.contains(adminChatId)) {
+                    menuChatIds.add(adminChatId);
                 }
             }
             if (!menuChatIds.isEmpty()) {
@@ -146,7 +129,7 @@ public class AdminService {
                 for (Long menuChatId : menuChatIds) {
                     InlineKeyboardButton button = new InlineKeyboardButton();
 
-                    button.setCallbackData(menuChatId.toString());
+                    button.setCallbackData(new CallbackPayload.ConfigMenu(menuChatId).encode());
                     Optional<ChatInfo> chatInfo = chatInfoRepository.findById(menuChatId);
                     if (!chatInfo.isEmpty()) {
                         button.setText(chatInfo.get().getChatTitle());
@@ -155,12 +138,12 @@ public class AdminService {
                 }
 
                 InlineKeyboardButton keysButton = new InlineKeyboardButton();
-                keysButton.setCallbackData(BotFinalVariables.KEYS_BUTTON);
+                keysButton.setCallbackData(new CallbackPayload.KeyWordsSetup().encode());
                 keysButton.setText("Настроить триггеры");
                 rowInLine.add(keysButton);
 
                 InlineKeyboardButton wipeKeysButton = new InlineKeyboardButton();
-                wipeKeysButton.setCallbackData(BotFinalVariables.WIPE_KEYS_BUTTON);
+                wipeKeysButton.setCallbackData(new CallbackPayload.KeyWordsWipe().encode());
                 wipeKeysButton.setText("Удалить триггеры");
                 rowInLine.add(wipeKeysButton);
 
@@ -230,9 +213,7 @@ public class AdminService {
         return userRepository.findById(warnedUserId).orElse(null);
     }
 
-    public void handleSetRecurrentText(CallbackQuery callbackQuery) {
-        String callbackData = callbackQuery.getData();
-        Long targetChatId = Long.parseLong(callbackData.split(":")[1]);
+    public void handleSetRecurrentText(CallbackQuery callbackQuery, Long targetChatId) {
         Long chatId = callbackQuery.getMessage().getChatId();
 
         String helpMessageText = "Пришлите повторяющееся сообщение. Примеры:\n\n" +
@@ -252,14 +233,12 @@ public class AdminService {
                 "__Этот текст будет подчеркнут__";
 
         messageService.sendMarkdownMessage(chatId, messageService.fixMarkdownText(helpMessageText));
-        userService.setAwaitingRecurrentText(true);
-        userService.setCurrentChatIdForRecurrentText(targetChatId);
+        conversationStateService.start(callbackQuery.getFrom().getId(), ConversationStateService.Step.RECURRENT_TEXT, targetChatId);
         messageService.executeDeleteMessage(new DeleteMessage(
                 String.valueOf(chatId), callbackQuery.getMessage().getMessageId()));
     }
 
-    public void handleConfigCallbackQuery(CallbackQuery callbackQuery) {
-        Long targetChatId = Long.parseLong(callbackQuery.getData());
+    public void handleConfigCallbackQuery(CallbackQuery callbackQuery, Long targetChatId) {
         messageService.sendConfigOptions(callbackQuery.getMessage().getChatId(), targetChatId, callbackQuery.getMessage().getMessageId());
     }
 
@@ -272,13 +251,13 @@ public class AdminService {
                     BanChatMember banChatMember = new BanChatMember();
                     banChatMember.setChatId(String.valueOf(chatId));
                     banChatMember.setUserId(bannedUserId);
-                    messageService.executeBanChatMember(banChatMember);
+                    memberStatusService.recordOnSuccess(chatId, bannedUserId, MemberStatusService.KICKED,
+                            messageService.executeBanChatMember(banChatMember));
 
-                    String text = "<a href=\"tg://user?id=" + bannedUserId + "\">" + bannedUserNickname + "</a> уничтожен";
+                    String text = MessageTemplates.BANNED.render(bannedUserId, bannedUserNickname);
                     messageService.sendHTMLMessage(chatId, text, message.getMessageId());
 
                     userService.addBannedUser(bannedUserId);
-                    schedulerService.startBannedUsersCleanupTask(1, TimeUnit.MINUTES);
 
                 }
             } else {
@@ -299,8 +278,7 @@ public class AdminService {
                         warnedUser.setNumberOfWarns((byte) 1);
                         userRepository.save(warnedUser);
 
-                        String text = "<a href=\"tg://user?id=" + warnedUserId + "\">" + warnedUserNickname + "</a> предупрежден. \n" +
-                                "Количество предупреждений: " + warnedUser.getNumberOfWarns() + " из 3";
+                        String text = MessageTemplates.WARNED.render(warnedUserId, warnedUserNickname, warnedUser.getNumberOfWarns());
 
                         messageService.sendHTMLMessage(chatId, text, message.getMessageId());
                         log.info("Пользователь {} предупрежден. Количество предупреждений: 1 из 3", warnedUserNickname);
@@ -314,8 +292,7 @@ public class AdminService {
                         warnedUser.setNumberOfWarns((byte) (warnedUser.getNumberOfWarns() + 1));
                         userRepository.save(warnedUser);
 
-                        String text = "<a href=\"tg://user?id=" + warnedUserId + "\">" + warnedUserNickname + "</a> предупрежден. \n" +
-                                "Количество предупреждений: " + warnedUser.getNumberOfWarns() + " из 3";
+                        String text = MessageTemplates.WARNED.render(warnedUserId, warnedUserNickname, warnedUser.getNumberOfWarns());
 
                         messageService.sendHTMLMessage(chatId, text, message.getMessageId());
                         log.info("Пользователь {} предупрежден. Количество предупреждений: {} из 3", warnedUserNickname, warnedUser.getNumberOfWarns());
@@ -340,8 +317,7 @@ public class AdminService {
                     warnedUser.setNumberOfWarns((byte) 0);
                     userRepository.save(warnedUser);
                 }
-                String text = "Пользователь <a href=\"tg://user?id=" + warnedUserId + "\">" + warnedUserNickname + "</a> " +
-                        "Количество предупреждений: " + warnedUser.getNumberOfWarns() + " из 3";
+                String text = MessageTemplates.WARNS_CHECKED.render(warnedUserId, warnedUserNickname, warnedUser.getNumberOfWarns());
                 messageService.sendHTMLMessage(chatId, text, message.getMessageId());
                 log.info("Проверка предупреждений для пользователя {}: {} из 3", warnedUserNickname, warnedUser.getNumberOfWarns());
             }
@@ -357,9 +333,7 @@ public class AdminService {
                 warnedUser.setNumberOfWarns((byte) 0);
                 userRepository.save(warnedUser);
 
-                String text = "Предупреждения сброшены\n" +
-                        "Пользователь <a href=\"tg://user?id=" + warnedUserId + "\">" + warnedUserNickname + "</a>\n" +
-                        "Количество предупреждений: " + warnedUser.getNumberOfWarns() + " из 3";
+                String text = MessageTemplates.WARNS_RESET.render(warnedUserId, warnedUserNickname, warnedUser.getNumberOfWarns());
                 messageService.sendHTMLMessage(chatId, text, message.getMessageId());
                 log.info("Предупреждения пользователя {} сброшены.", warnedUserNickname);
             }
@@ -371,6 +345,7 @@ public class AdminService {
     public void wipeAllKeys(CallbackQuery callbackQuery) {
         Long chatId = callbackQuery.getMessage().getChatId();
         keyWordRepository.deleteAll();
+        keyWordMatcher.reload();
         messageService.sendMessage(chatId, "Все слова-триггеры успешно удалены");
         messageService.executeDeleteMessage(new DeleteMessage(
                 String.valueOf(chatId), callbackQuery.getMessage().getMessageId()));
@@ -379,16 +354,15 @@ public class AdminService {
     public void handleKeyWordsCallbackQuery(CallbackQuery callbackQuery) {
         Long chatId = callbackQuery.getMessage().getChatId();
         messageService.sendMessage(chatId, "Пришлите новые слова-триггеры одним сообщением через запятую");
-        userService.setAwaitingKeyWords(true);
+        conversationStateService.start(callbackQuery.getFrom().getId(), ConversationStateService.Step.KEY_WORDS, null);
         messageService.executeDeleteMessage(new DeleteMessage(
                 String.valueOf(chatId), callbackQuery.getMessage().getMessageId()));
     }
 
-    public void handleUnmuteCommandCallbackQuery(CallbackQuery callbackQuery) {
-        String callbackData = callbackQuery.getData();
-        Long chatId = Long.parseLong(callbackData.split(":")[1]);
-        Long userId = Long.parseLong(callbackData.split(":")[2]);
-        String userNickname = callbackData.split(":")[3];
+    public void handleUnmuteCommandCallbackQuery(CallbackQuery callbackQuery, CallbackPayload.Unmute unmute) {
+        Long chatId = unmute.chatId();
+        Long userId = unmute.userId();
+        String userNickname = unmute.nickname();
         Long userPressingTheButtonId = callbackQuery.getFrom().getId();
         if (chatAdminService.isAdmin(chatId, userPressingTheButtonId)) {
             unmuteUser(chatId, userId, userNickname, callbackQuery.getMessage(), true);
@@ -410,16 +384,17 @@ public class AdminService {
                         restrictChatMember.setUserId(warnedUserId);
                         restrictChatMember.setPermissions(new ChatPermissions());
                         restrictChatMember.forTimePeriodDuration(muteDuration);
-                        messageService.executeRestrictChatMember(restrictChatMember);
+                        memberStatusService.recordOnSuccess(chatId, warnedUserId, MemberStatusService.RESTRICTED,
+                                messageService.executeRestrictChatMember(restrictChatMember));
 
-                        String text = "<a href=\"tg://user?id=" + warnedUserId + "\">" + warnedUserNickname + "</a> обеззвучен на сутки";
+                        String text = MessageTemplates.MUTED.render(warnedUserId, warnedUserNickname);
 
                         InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
                         List<List<InlineKeyboardButton>> rows = new ArrayList<>();
                         List<InlineKeyboardButton> rowInLine = new ArrayList<>();
 
                         InlineKeyboardButton unmuteButton = new InlineKeyboardButton();
-                        unmuteButton.setCallbackData(BotFinalVariables.UNMUTE_BUTTON + ":" + chatId + ":" + warnedUserId + ":" + warnedUserNickname);
+                        unmuteButton.setCallbackData(new CallbackPayload.Unmute(chatId, warnedUserId, warnedUserNickname).encode());
                         unmuteButton.setText("Снять ограничения");
 
                         rowInLine.add(unmuteButton);
@@ -453,16 +428,17 @@ public class AdminService {
                 restrictChatMember.setUserId(warnedUserId);
                 restrictChatMember.setPermissions(new ChatPermissions());
                 restrictChatMember.forTimePeriodDuration(muteDuration);
-                messageService.executeRestrictChatMember(restrictChatMember);
+                memberStatusService.recordOnSuccess(chatId, warnedUserId, MemberStatusService.RESTRICTED,
+                        messageService.executeRestrictChatMember(restrictChatMember));
 
-                String text = "<a href=\"tg://user?id=" + warnedUserId + "\">" + warnedUserNickname + "</a> обеззвучен на сутки";
+                String text = MessageTemplates.MUTED.render(warnedUserId, warnedUserNickname);
 
                 InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
                 List<List<InlineKeyboardButton>> rows = new ArrayList<>();
                 List<InlineKeyboardButton> rowInLine = new ArrayList<>();
 
                 InlineKeyboardButton unmuteButton = new InlineKeyboardButton();
-                unmuteButton.setCallbackData(BotFinalVariables.UNMUTE_BUTTON + ":" + chatId + ":" + warnedUserId + ":" + warnedUserNickname);
+                unmuteButton.setCallbackData(new CallbackPayload.Unmute(chatId, warnedUserId, warnedUserNickname).encode());
                 unmuteButton.setText("Снять ограничения");
 
                 rowInLine.add(unmuteButton);
@@ -497,9 +473,9 @@ public class AdminService {
                 restrictChatMember.setUserId(warnedUserId);
                 restrictChatMember.setPermissions(permissions);
 
-                messageService.executeRestrictChatMember(restrictChatMember);
-                messageService.sendHTMLMessage(chatId, "Все ограничения сняты с пользователя " + "<a href=\"tg://user?id=" +
-                        warnedUserId + "\">" + warnedUserNickname + "</a>");
+                memberStatusService.recordOnSuccess(chatId, warnedUserId, MemberStatusService.MEMBER,
+                        messageService.executeRestrictChatMember(restrictChatMember));
+                messageService.sendHTMLMessage(chatId, MessageTemplates.UNMUTED.render(warnedUserId, warnedUserNickname));
 
                 messageService.executeDeleteMessage(new DeleteMessage(
                         String.valueOf(chatId), message.getMessageId()));
@@ -527,9 +503,9 @@ public class AdminService {
             restrictChatMember.setUserId(warnedUserId);
             restrictChatMember.setPermissions(permissions);
 
-            messageService.executeRestrictChatMember(restrictChatMember);
-            messageService.sendHTMLMessage(chatId, "Все ограничения сняты с пользователя " + "<a href=\"tg://user?id=" +
-                    warnedUserId + "\">" + warnedUserNickname + "</a>");
+            memberStatusService.recordOnSuccess(chatId, warnedUserId, MemberStatusService.MEMBER,
+                    messageService.executeRestrictChatMember(restrictChatMember));
+            messageService.sendHTMLMessage(chatId, MessageTemplates.UNMUTED.render(warnedUserId, warnedUserNickname));
 
             messageService.executeDeleteMessage(new DeleteMessage(
                     String.valueOf(chatId), message.getMessageId()));
@@ -540,19 +516,12 @@ public class AdminService {
 
     public void wipeAllMessages(Long chatId, Message message) {
         if (chatAdminService.isAdmin(chatId, message.getFrom().getId())) {
-            List<Message> allMessages = messageService.getAllMessages(chatId)
-                    .getOrDefault(chatId, Collections.emptyList());
-
-            if (!allMessages.isEmpty()) {
-                for (Message chatMessage : allMessages) {
-                    try {
-                        messageService.executeDeleteMessage(new DeleteMessage(
-                                String.valueOf(chatId), chatMessage.getMessageId()));
-                    } catch (Exception e) {
-                        System.err.println("Не удалось удалить сообщение: " + chatMessage.getMessageId());
-                    }
+            int[] messageIds = messageService.drainMessageIds(chatId);
+
+            if (messageIds.length > 0) {
+                for (int messageId : messageIds) {
+                    messageService.executeDeleteMessage(new DeleteMessage(String.valueOf(chatId), messageId));
                 }
-                messageService.clearAllMessages(chatId);
                 messageService.sendMessage(chatId, "Все сообщения успешно удалены");
             } else {
                 messageService.sendMessage(chatId, "Нет сообщений для удаления");
@@ -563,11 +532,7 @@ public class AdminService {
     }
 
     public boolean isUserAlreadyBanned(Long userId, Long chatId) {
-        GetChatMember getChatMember = new GetChatMember();
-        getChatMember.setChatId(chatId.toString());
-        getChatMember.setUserId(userId);
-        ChatMember chatMember = messageService.executeGetChatMember(getChatMember);
-        return chatMember instanceof ChatMemberBanned;
+        return memberStatusService.isBanned(chatId, userId);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.kaminsky.service;
+
+import com.kaminsky.model.BotMessage;
+import com.kaminsky.model.ChatInfo;
+import com.kaminsky.model.KeyWord;
+import com.kaminsky.model.repositories.BotMessageRepository;
+import com.kaminsky.model.repositories.ChatInfoRepository;
+import com.kaminsky.model.repositories.KeyWordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+/**
+ * Кэшируемые чтения из БД. Вынесены в отдельный бин, чтобы вызовы шли через прокси Spring:
+ * аннотации кэша на protected-методах, вызываемых изнутри того же бина, не срабатывают.
+ */
+@Slf4j
+@Service
+public class CachedDataService {
+
+    private final ChatInfoRepository chatInfoRepository;
+    private final BotMessageRepository botMessageRepository;
+    private final KeyWordRepository keyWordRepository;
+
+    @Autowired
+    public CachedDataService(ChatInfoRepository chatInfoRepository,
+                             BotMessageRepository botMessageRepository,
+                             KeyWordRepository keyWordRepository) {
+        this.chatInfoRepository = chatInfoRepository;
+        this.botMessageRepository = botMessageRepository;
+        this.keyWordRepository = keyWordRepository;
+    }
+
+    @Cacheable(value = "chatInfo", key = "#chatId")
+    public Optional<ChatInfo> getChatInfo(Long chatId) {
+        return chatInfoRepository.findById(chatId);
+    }
+
+    @CachePut(value = "chatInfo", key = "#chatInfo.chatId")
+    public ChatInfo saveChatInfo(ChatInfo chatInfo) {
+        return chatInfoRepository.save(chatInfo);
+    }
+
+    @CacheEvict(value = "chatInfo", key = "#chatId")
+    public void evictChatInfo(Long chatId) {
+        log.info("Кэш объектов ChatInfo с chatId {} очищен", chatId);
+    }
+
+    @Cacheable(value = "botMessageCache", key = "#chatId")
+    public Optional<BotMessage> getBotMessage(Long chatId) {
+        log.info("Берем объект BotMessage из БД");
+        return botMessageRepository.findById(chatId);
+    }
+
+    @CacheEvict(value = "botMessageCache", key = "#chatId")
+    public void evictBotMessage(Long chatId) {
+        log.info("Кэш BotMessage для чата {} очищен", chatId);
+    }
+
+    @Cacheable(value = "keywordsCache", key = "'all'")
+    public List<String> getKeyWords() {
+        log.info("Взяли слова-триггеры из БД");
+        Iterable<KeyWord> keyWords = keyWordRepository.findAll();
+        return StreamSupport.stream(keyWords.spliterator(), false)
+                .map(KeyWord::getKeyWord)
+                .collect(Collectors.toList());
+    }
+
+    @CacheEvict(value = "keywordsCache", allEntries = true)
+    public void evictKeyWords() {
+        log.info("Кэш слов-триггеров очищен");
+    }
+}
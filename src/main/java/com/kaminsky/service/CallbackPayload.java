@@ -0,0 +1,146 @@
+package com.kaminsky.service;
+
+import com.kaminsky.finals.BotFinalVariables;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Данные inline-кнопок. Строка callback_data разбирается один раз в типизированную запись,
+ * обработчик выбирается по типу записи. Формат: короткий префикс и поля через ':'.
+ * Старые префиксы вида UNMUTE_BUTTON тоже разбираются: такие кнопки еще висят в чатах.
+ */
+public sealed interface CallbackPayload {
+
+    // ограничение Telegram на callback_data
+    int MAX_BYTES = 64;
+
+    String encode();
+
+    record CaptchaConfirm(long userId) implements CallbackPayload {
+        @Override
+        public String encode() {
+            return "c:" + userId;
+        }
+    }
+
+    record RaidConfirm() implements CallbackPayload {
+        @Override
+        public String encode() {
+            return "r";
+        }
+    }
+
+    record ConfigMenu(long chatId) implements CallbackPayload {
+        @Override
+        public String encode() {
+            return "m:" + chatId;
+        }
+    }
+
+    record WelcomeTextSetup(long chatId) implements CallbackPayload {
+        @Override
+        public String encode() {
+            return "w:" + chatId;
+        }
+    }
+
+    record RecurrentTextSetup(long chatId) implements CallbackPayload {
+        @Override
+        public String encode() {
+            return "t:" + chatId;
+        }
+    }
+
+    record KeyWordsSetup() implements CallbackPayload {
+        @Override
+        public String encode() {
+            return "k";
+        }
+    }
+
+    record KeyWordsWipe() implements CallbackPayload {
+        @Override
+        public String encode() {
+            return "x";
+        }
+    }
+
+    /**
+     * Имя идет последним полем и может содержать ':'; слишком длинное имя обрезается под лимит Telegram.
+     */
+    record Unmute(long chatId, long userId, String nickname) implements CallbackPayload {
+        @Override
+        public String encode() {
+            String prefix = "u:" + chatId + ":" + userId + ":";
+            return prefix + truncateUtf8(nickname, MAX_BYTES - prefix.length());
+        }
+    }
+
+    /**
+     * @return null, если данные не соответствуют ни одной кнопке
+     */
+    static CallbackPayload parse(String data) {
+        if (data == null || data.isEmpty()) {
+            return null;
+        }
+        int separator = data.indexOf(':');
+        String prefix = separator < 0 ? data : data.substring(0, separator);
+        Function<String[], CallbackPayload> parser = Parsers.BY_PREFIX.get(prefix);
+        try {
+            if (parser == null) {
+                // меню настроек раньше передавало голый id чата
+                return new ConfigMenu(Long.parseLong(data));
+            }
+            String[] fields = separator < 0 ? new String[0] : data.substring(separator + 1).split(":", 3);
+            return parser.apply(fields);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String truncateUtf8(String text, int maxBytes) {
+        if (text == null) {
+            return "";
+        }
+        int bytes = 0;
+        int end = 0;
+        while (end < text.length()) {
+            int codePoint = text.codePointAt(end);
+            int size = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (bytes + size > maxBytes) {
+                break;
+            }
+            bytes += size;
+            end += Character.charCount(codePoint);
+        }
+        return text.substring(0, end);
+    }
+
+    final class Parsers {
+
+        private static final Map<String, Function<String[], CallbackPayload>> BY_PREFIX = new HashMap<>();
+
+        static {
+            register(fields -> new CaptchaConfirm(Long.parseLong(fields[0])), "c", BotFinalVariables.CONFIRM_BUTTON);
+            register(fields -> new RaidConfirm(), "r", BotFinalVariables.RAID_CONFIRM_BUTTON);
+            register(fields -> new ConfigMenu(Long.parseLong(fields[0])), "m");
+            register(fields -> new WelcomeTextSetup(Long.parseLong(fields[0])), "w", BotFinalVariables.WELCOME_TEXT_BUTTON);
+            register(fields -> new RecurrentTextSetup(Long.parseLong(fields[0])), "t", BotFinalVariables.RECURRENT_TEXT_BUTTON);
+            register(fields -> new KeyWordsSetup(), "k", BotFinalVariables.KEYS_BUTTON);
+            register(fields -> new KeyWordsWipe(), "x", BotFinalVariables.WIPE_KEYS_BUTTON);
+            register(fields -> new Unmute(Long.parseLong(fields[0]), Long.parseLong(fields[1]), fields[2]),
+                    "u", BotFinalVariables.UNMUTE_BUTTON);
+        }
+
+        private Parsers() {
+        }
+
+        private static void register(Function<String[], CallbackPayload> parser, String... prefixes) {
+            for (String prefix : prefixes) {
+                BY_PREFIX.put(prefix, parser);
+            }
+        }
+    }
+}
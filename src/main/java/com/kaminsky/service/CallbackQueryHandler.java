@@ -1,41 +1,51 @@
 package com.kaminsky.service;
 
-import com.kaminsky.finals.BotFinalVariables;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
 @Slf4j
 @Service
 public class CallbackQueryHandler {
 
     private final CaptchaService captchaService;
     private final AdminService adminService;
+    private final Map<Class<? extends CallbackPayload>, BiConsumer<CallbackQuery, CallbackPayload>> handlers = new HashMap<>();
 
     @Autowired
     public CallbackQueryHandler(CaptchaService captchaService,
                                 AdminService adminService) {
         this.captchaService = captchaService;
         this.adminService = adminService;
+        registerHandlers();
+    }
+
+    private void registerHandlers() {
+        register(CallbackPayload.CaptchaConfirm.class, captchaService::handleConfirmButton);
+        register(CallbackPayload.RaidConfirm.class, (query, payload) -> captchaService.handleRaidConfirmButton(query));
+        register(CallbackPayload.ConfigMenu.class, (query, payload) -> adminService.handleConfigCallbackQuery(query, payload.chatId()));
+        register(CallbackPayload.WelcomeTextSetup.class, (query, payload) -> adminService.handleSetWelcomeText(query, payload.chatId()));
+        register(CallbackPayload.RecurrentTextSetup.class, (query, payload) -> adminService.handleSetRecurrentText(query, payload.chatId()));
+        register(CallbackPayload.Unmute.class, adminService::handleUnmuteCommandCallbackQuery);
+        register(CallbackPayload.KeyWordsSetup.class, (query, payload) -> adminService.handleKeyWordsCallbackQuery(query));
+        register(CallbackPayload.KeyWordsWipe.class, (query, payload) -> adminService.wipeAllKeys(query));
+    }
+
+    private <P extends CallbackPayload> void register(Class<P> type, BiConsumer<CallbackQuery, P> handler) {
+        handlers.put(type, (query, payload) -> handler.accept(query, type.cast(payload)));
     }
 
     public void handleCallbackQuery(CallbackQuery callbackQuery) {
-        String data = callbackQuery.getData();
-        if (data.startsWith(BotFinalVariables.CONFIRM_BUTTON)) {
-            captchaService.handleConfirmButton(callbackQuery);
-        } else if (data.startsWith(BotFinalVariables.WELCOME_TEXT_BUTTON)) {
-            adminService.handleSetWelcomeText(callbackQuery);
-        } else if (data.startsWith(BotFinalVariables.RECURRENT_TEXT_BUTTON)) {
-            adminService.handleSetRecurrentText(callbackQuery);
-        } else if (data.startsWith(BotFinalVariables.UNMUTE_BUTTON)) {
-            adminService.handleUnmuteCommandCallbackQuery(callbackQuery);
-        } else if (data.startsWith(BotFinalVariables.KEYS_BUTTON)) {
-            adminService.handleKeyWordsCallbackQuery(callbackQuery);
-        } else if (data.startsWith(BotFinalVariables.WIPE_KEYS_BUTTON)) {
-            adminService.wipeAllKeys(callbackQuery);
-        } else {
-            adminService.handleConfigCallbackQuery(callbackQuery);
+        CallbackPayload payload = CallbackPayload.parse(callbackQuery.getData());
+        if (payload == null) {
+            log.warn("Неизвестные данные кнопки: {}", callbackQuery.getData());
+            return;
         }
+        handlers.get(payload.getClass()).accept(callbackQuery, payload);
     }
-}
\ No newline at end of file
+}
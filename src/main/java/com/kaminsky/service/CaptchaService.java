@@ -1,12 +1,14 @@
 package com.kaminsky.service;
 
-import com.kaminsky.finals.BotFinalVariables;
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.finals.MessageTemplates;
 import com.kaminsky.model.BotMessage;
-import com.kaminsky.model.repositories.BotMessageRepository;
-import com.vdurmont.emoji.EmojiParser;
+import com.kaminsky.util.MessageTemplate;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.methods.groupadministration.BanChatMember;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
@@ -21,9 +23,14 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKe
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Service
@@ -31,18 +38,54 @@ public class CaptchaService {
 
     private final UserService userService;
     private final MessageService messageService;
-    private final BotMessageRepository botMessageRepository;
-    private final SchedulerService schedulerService;
+    private final CachedDataService cachedDataService;
+    private final CaptchaTimeoutScheduler captchaTimeoutScheduler;
+    private final RaidDetector raidDetector;
+    private final long raidBatchMillis;
+    private final int raidMaxBatchSize;
+    // срок каптчи для текста сообщения, например "3 мин."
+    private final String captchaTimeoutText;
+    // вошедшие во время рейда, которые ждут общей каптчи
+    private final Map<Long, RaidBatch> raidBatches = new ConcurrentHashMap<>();
+    // общие каптчи рейда: сколько пользователей еще не прошли и не кикнуты
+    private final Map<SharedCaptcha, AtomicInteger> sharedCaptchas = new ConcurrentHashMap<>();
+    private final Map<Long, CompiledWelcome> welcomeTemplates = new ConcurrentHashMap<>();
 
     @Autowired
     public CaptchaService(UserService userService,
                           MessageService messageService,
-                          BotMessageRepository botMessageRepository,
-                          SchedulerService schedulerService) {
+                          CachedDataService cachedDataService,
+                          CaptchaTimeoutScheduler captchaTimeoutScheduler,
+                          RaidDetector raidDetector,
+                          BotConfig config) {
         this.userService = userService;
         this.messageService = messageService;
-        this.botMessageRepository = botMessageRepository;
-        this.schedulerService = schedulerService;
+        this.cachedDataService = cachedDataService;
+        this.captchaTimeoutScheduler = captchaTimeoutScheduler;
+        this.raidDetector = raidDetector;
+        this.raidBatchMillis = TimeUnit.SECONDS.toMillis(config.getRaidBatchSeconds());
+        this.raidMaxBatchSize = config.getRaidMaxBatchSize();
+        this.captchaTimeoutText = formatTimeout(config.getCaptchaTimeoutSeconds());
+        captchaTimeoutScheduler.setExpiryHandler(this::kickExpiredUsers);
+    }
+
+    /**
+     * Счетчики общих каптч живут в памяти: после рестарта собираем их заново из восстановленных таймаутов,
+     * иначе первый прошедший удалил бы общее сообщение вместе с кнопкой остальных.
+     * Сообщения с одним ожидающим пользователем счетчик не получают: одиночную каптчу при прохождении
+     * не освобождают, а общую с последним пользователем удаляют и без счетчика.
+     */
+    @PostConstruct
+    public void restoreSharedCaptchas() {
+        Map<SharedCaptcha, Integer> counts = new HashMap<>();
+        for (CaptchaTimeoutScheduler.PendingCaptcha captcha : captchaTimeoutScheduler.getPendingCaptchas()) {
+            counts.merge(new SharedCaptcha(captcha.chatId(), captcha.messageId()), 1, Integer::sum);
+        }
+        counts.forEach((key, count) -> {
+            if (count > 1) {
+                sharedCaptchas.put(key, new AtomicInteger(count));
+            }
+        });
     }
 
     public void popupCaptcha(Update update, Long chatId) {
@@ -53,23 +96,25 @@ public class CaptchaService {
                 long userId = newMember.getId();
                 String userFirstName = newMember.getFirstName();
 
-                userService.setUserCaptchaStatus(userId, false);
+                messageService.trackUserMessages(chatId, userId);
+
+                if (raidDetector.onJoin(chatId)) {
+                    addToRaidBatch(chatId, newMember);
+                    continue;
+                }
 
                 SendMessage message = new SendMessage();
-                String userLink = "<a href=\"tg://user?id=" + userId + "\">" + userFirstName + "</a>" +
-                        ", нажмите кнопку в течение 3-х минут, чтобы войти в чат";
                 message.setParseMode("HTML");
                 message.setChatId(String.valueOf(chatId));
-                message.setText(userLink);
+                message.setText(MessageTemplates.CAPTCHA.render(userId, userFirstName, captchaTimeoutText));
 
                 InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
                 List<List<InlineKeyboardButton>> rows = new ArrayList<>();
                 List<InlineKeyboardButton> rowInLine = new ArrayList<>();
                 InlineKeyboardButton confirmButton = new InlineKeyboardButton();
 
-                String answer = EmojiParser.parseToUnicode(":point_right:" + "Я не бот" + ":point_left:");
-                confirmButton.setText(answer);
-                confirmButton.setCallbackData(BotFinalVariables.CONFIRM_BUTTON + ":" + userId);
+                confirmButton.setText(MessageTemplates.CONFIRM_BUTTON_TEXT.render());
+                confirmButton.setCallbackData(new CallbackPayload.CaptchaConfirm(userId).encode());
 
                 rowInLine.add(confirmButton);
                 rows.add(rowInLine);
@@ -77,58 +122,29 @@ public class CaptchaService {
 
                 message.setReplyMarkup(markup);
 
-                Integer messageId = messageService.executeCaptchaMessage(message);
-
-                handleCaptchaTimeout(chatId, newMember.getId(), messageId);
+                messageService.executeCaptchaMessage(message)
+                        .thenAccept(messageId -> handleCaptchaTimeout(chatId, userId, messageId));
             }
         }
     }
 
-    public void handleConfirmButton(CallbackQuery callbackQuery) {
+    public void handleConfirmButton(CallbackQuery callbackQuery, CallbackPayload.CaptchaConfirm confirm) {
         log.info("Пользователь нажал на кнопку вступления в чат: " + callbackQuery.getFrom().getId());
 
-        String callbackData = callbackQuery.getData();
-        String[] parts = callbackData.split(":");
-
-        if (parts.length != 2) {
-            log.error("Неверный формат callback data: {}", callbackData);
-            return;
-        }
-
-        String button = parts[0];
-        Long targetUserId;
-
-        try {
-            targetUserId = Long.parseLong(parts[1]);
-        } catch (NumberFormatException e) {
-            log.error("Неверный id пользователя: {}", parts[1]);
-            return;
-        }
-
-        if (!button.equals(BotFinalVariables.CONFIRM_BUTTON)) {
-            log.warn("Неизвестный тип кнопки: {}", button);
-            return;
-        }
-
+        Long targetUserId = confirm.userId();
         Long userId = callbackQuery.getFrom().getId();
         Long chatId = callbackQuery.getMessage().getChatId();
         Integer messageId = callbackQuery.getMessage().getMessageId();
         String userFirstName = callbackQuery.getFrom().getFirstName();
-        String userLink = "[" + userFirstName + "](tg://user?id=" + userId + ")";
 
         if (targetUserId.equals(userId)) {
+            if (captchaTimeoutScheduler.cancel(chatId, userId) == null) {
+                // каптча уже истекла и пользователь кикнут, приветствовать некого
+                log.info("Каптча пользователя {} в чате {} уже истекла", userId, chatId);
+                return;
+            }
             log.info("Получаем приветственное сообщение для чата с ID {}", chatId);
-            userService.setUserCaptchaStatus(userId, true);
-            Optional<BotMessage> botMessageOptional = getBotMessageById(chatId);
-            String welcomeMessage = botMessageOptional
-                    .map(BotMessage::getWelcomeMessage)
-                    .orElse("");
-
-            String basicText = "Добро пожаловать, " + userLink + "\n";
-            StringBuilder builder = new StringBuilder();
-            builder.append(basicText);
-            builder.append(messageService.fixMarkdownText(welcomeMessage));
-            String text = builder.toString();
+            String text = getWelcomeTemplate(chatId).render(userFirstName, userId);
 
             EditMessageText editMessage = new EditMessageText();
             editMessage.setChatId(chatId.toString());
@@ -144,37 +160,176 @@ public class CaptchaService {
         }
     }
 
-    @Cacheable(value = "botMessageCache", key = "#chatId")
-    protected Optional<BotMessage> getBotMessageById(Long chatId) {
-        Optional<BotMessage> botMessageOptional = botMessageRepository.findById(chatId);
-        log.info("Берем объект BotMessage из БД");
-        return botMessageOptional;
+    // шаблон приветствия чата собирается заново, только если текст приветствия поменялся
+    private MessageTemplate getWelcomeTemplate(Long chatId) {
+        String welcomeMessage = cachedDataService.getBotMessage(chatId)
+                .map(BotMessage::getWelcomeMessage)
+                .orElse("");
+        CompiledWelcome compiled = welcomeTemplates.get(chatId);
+        if (compiled == null || !compiled.source().equals(welcomeMessage)) {
+            compiled = new CompiledWelcome(welcomeMessage,
+                    MessageTemplates.WELCOME_HEADER.append(messageService.fixMarkdownText(welcomeMessage)));
+            welcomeTemplates.put(chatId, compiled);
+        }
+        return compiled.template();
     }
 
-    public void handleCaptchaTimeout(Long chatId, Long userId, Integer messageId) {
-        schedulerService.scheduleTask(() -> {
-            boolean isCaptchaConfirmed = userService.getUserCaptchaStatus(userId);
-            if (!isCaptchaConfirmed) {
+    public void handleRaidConfirmButton(CallbackQuery callbackQuery) {
+        Long userId = callbackQuery.getFrom().getId();
+        Long chatId = callbackQuery.getMessage().getChatId();
+        Integer messageId = callbackQuery.getMessage().getMessageId();
 
-                BanChatMember kickChatMember = new BanChatMember();
-                Duration kickDuration = Duration.ofSeconds(40);
-                kickChatMember.setChatId(chatId.toString());
-                kickChatMember.setUserId(userId);
-                kickChatMember.forTimePeriodDuration(kickDuration);
+        CaptchaTimeoutScheduler.PendingCaptcha captcha = captchaTimeoutScheduler.getPending(chatId, userId);
+        if (captcha == null || !captcha.messageId().equals(messageId)) {
+            log.warn("Пользователь {} нажал на кнопку общей каптчи {}, не относящейся к нему", userId, messageId);
+            return;
+        }
+        if (captchaTimeoutScheduler.cancel(chatId, userId) == null) {
+            return;
+        }
+        log.info("Пользователь {} прошел общую каптчу в чате {}", userId, chatId);
+        messageService.deleteUserMessages(chatId, userId);
+        releaseCaptchaMessage(chatId, messageId);
+    }
 
-                messageService.executeBanChatMember(kickChatMember);
-                userService.addBannedUser(userId);
-                log.info("Пользователь {} не прошел каптчу и был кикнут", userId);
+    public void handleCaptchaTimeout(Long chatId, Long userId, Integer messageId) {
+        CaptchaTimeoutScheduler.PendingCaptcha previous = captchaTimeoutScheduler.schedule(chatId, userId, messageId);
+        if (previous != null) {
+            // пользователь перезашел, не дождавшись таймаута: старая каптча больше не нужна
+            releaseCaptchaMessage(chatId, previous.messageId());
+        }
+    }
 
-                DeleteMessage deleteMessage = new DeleteMessage();
-                deleteMessage.setChatId(String.valueOf(chatId));
-                deleteMessage.setMessageId(messageId);
+    @Scheduled(fixedRate = 1000)
+    public void flushRaidBatches() {
+        long openedBefore = System.currentTimeMillis() - raidBatchMillis;
+        for (Map.Entry<Long, RaidBatch> entry : raidBatches.entrySet()) {
+            RaidBatch batch = entry.getValue();
+            if (batch.openedAtMillis <= openedBefore && raidBatches.remove(entry.getKey(), batch)) {
+                sendRaidCaptcha(entry.getKey(), batch.users);
+            }
+        }
+    }
 
-                messageService.executeDeleteMessage(deleteMessage);
+    // незакрытые пачки рейда нигде не сохраняются: отправляем каптчу сразу и ждем, пока таймауты попадут в Redis
+    @PreDestroy
+    public void flushRaidBatchesOnShutdown() {
+        List<CompletableFuture<Void>> sent = new ArrayList<>();
+        for (Long chatId : raidBatches.keySet()) {
+            RaidBatch batch = raidBatches.remove(chatId);
+            if (batch != null) {
+                sent.add(sendRaidCaptcha(chatId, batch.users));
+            }
+        }
+        if (sent.isEmpty()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(sent.toArray(new CompletableFuture[0])).join();
+            log.info("Перед остановкой отправлены общие каптчи в {} чатов", sent.size());
+        } catch (CompletionException e) {
+            log.error("Не все общие каптчи отправлены перед остановкой: {}", e.getMessage());
+        }
+    }
 
-                messageService.deleteUserMessages(chatId, userId);
-                schedulerService.startBannedUsersCleanupTask(1, TimeUnit.MINUTES);
+    private void addToRaidBatch(Long chatId, User newMember) {
+        RaidBatch batch = raidBatches.compute(chatId, (id, current) -> {
+            RaidBatch target = current == null ? new RaidBatch(System.currentTimeMillis()) : current;
+            target.users.add(newMember);
+            return target;
+        });
+        if (batch.users.size() >= raidMaxBatchSize && raidBatches.remove(chatId, batch)) {
+            sendRaidCaptcha(chatId, batch.users);
+        }
+    }
+
+    // одна каптча на всех вошедших за окно пачки, кнопка общая и проверяется по нажавшему
+    private CompletableFuture<Void> sendRaidCaptcha(Long chatId, List<User> users) {
+        StringBuilder text = new StringBuilder();
+        for (User user : users) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(MessageTemplates.USER_LINK_HTML.render(user.getId(), user.getFirstName()));
+        }
+        text.append(MessageTemplates.CAPTCHA_PROMPT.render(captchaTimeoutText));
+
+        SendMessage message = new SendMessage();
+        message.setParseMode("HTML");
+        message.setChatId(String.valueOf(chatId));
+        message.setText(text.toString());
+
+        InlineKeyboardMarkup markup = new InlineKeyboardMarkup();
+        List<List<InlineKeyboardButton>> rows = new ArrayList<>();
+        List<InlineKeyboardButton> rowInLine = new ArrayList<>();
+        InlineKeyboardButton confirmButton = new InlineKeyboardButton();
+        confirmButton.setText(MessageTemplates.CONFIRM_BUTTON_TEXT.render());
+        confirmButton.setCallbackData(new CallbackPayload.RaidConfirm().encode());
+        rowInLine.add(confirmButton);
+        rows.add(rowInLine);
+        markup.setKeyboard(rows);
+        message.setReplyMarkup(markup);
+
+        log.info("Общая каптча для {} пользователей в чате {}", users.size(), chatId);
+        return messageService.executeCaptchaMessage(message).thenAccept(messageId -> {
+            sharedCaptchas.put(new SharedCaptcha(chatId, messageId), new AtomicInteger(users.size()));
+            List<Long> userIds = users.stream().map(User::getId).toList();
+            for (CaptchaTimeoutScheduler.PendingCaptcha previous : captchaTimeoutScheduler.scheduleAll(chatId, userIds, messageId)) {
+                releaseCaptchaMessage(chatId, previous.messageId());
             }
-        }, 3, TimeUnit.MINUTES);
+        });
+    }
+
+    // общую каптчу удаляем, только когда с ней разобрались все ее пользователи
+    private void releaseCaptchaMessage(Long chatId, Integer messageId) {
+        SharedCaptcha key = new SharedCaptcha(chatId, messageId);
+        AtomicInteger remaining = sharedCaptchas.get(key);
+        if (remaining != null && remaining.decrementAndGet() > 0) {
+            return;
+        }
+        sharedCaptchas.remove(key);
+        messageService.executeDeleteMessage(new DeleteMessage(String.valueOf(chatId), messageId));
+    }
+
+    // вызывается колесом таймеров раз в тик для всех, у кого истекла каптча
+    private void kickExpiredUsers(List<CaptchaTimeoutScheduler.PendingCaptcha> expired) {
+        for (CaptchaTimeoutScheduler.PendingCaptcha captcha : expired) {
+            Long chatId = captcha.chatId();
+            Long userId = captcha.userId();
+
+            BanChatMember kickChatMember = new BanChatMember();
+            Duration kickDuration = Duration.ofSeconds(40);
+            kickChatMember.setChatId(chatId.toString());
+            kickChatMember.setUserId(userId);
+            kickChatMember.forTimePeriodDuration(kickDuration);
+
+            messageService.executeBanChatMember(kickChatMember);
+            userService.addBannedUser(userId);
+            log.info("Пользователь {} не прошел каптчу и был кикнут", userId);
+
+            // общая каптча удаляется вместе с последним ее пользователем, даже если они истекли в разных тиках
+            releaseCaptchaMessage(chatId, captcha.messageId());
+
+            messageService.deleteUserMessages(chatId, userId);
+        }
+    }
+
+    private static String formatTimeout(long seconds) {
+        return seconds % 60 == 0 ? seconds / 60 + " мин." : seconds + " сек.";
+    }
+
+    private record SharedCaptcha(long chatId, int messageId) {
+    }
+
+    private record CompiledWelcome(String source, MessageTemplate template) {
+    }
+
+    private static final class RaidBatch {
+        private final long openedAtMillis;
+        private final List<User> users = new ArrayList<>();
+
+        private RaidBatch(long openedAtMillis) {
+            this.openedAtMillis = openedAtMillis;
+        }
     }
 }
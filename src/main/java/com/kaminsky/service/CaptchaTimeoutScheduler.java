@@ -0,0 +1,204 @@
+package com.kaminsky.service;
+
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.util.TimingWheel;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Таймауты каптчи на колесе таймеров вместо отдельной задачи на каждого вошедшего.
+ * Пройденная каптча отменяет таймаут, истекшие за один тик отдаются обработчику одной пачкой.
+ * Незавершенные каптчи дублируются в sorted set Redis (score - срок) и восстанавливаются при старте,
+ * записи удаляются при прохождении или истечении каптчи.
+ */
+@Slf4j
+@Service
+public class CaptchaTimeoutScheduler {
+
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_SIZE = 64;
+    private static final int LEVELS = 3;
+    static final String PENDING_KEY = "sokrytbot:captcha:pending";
+
+    private final TimingWheel<PendingCaptcha> wheel = new TimingWheel<>(TICK_MILLIS, WHEEL_SIZE, LEVELS, System.currentTimeMillis());
+    private final Map<Key, TimingWheel.Timeout<PendingCaptcha>> pending = new ConcurrentHashMap<>();
+    private final StringRedisTemplate redisTemplate;
+    private final long timeoutMillis;
+    private volatile Consumer<List<PendingCaptcha>> expiryHandler = batch -> { };
+
+    @Autowired
+    public CaptchaTimeoutScheduler(StringRedisTemplate redisTemplate, BotConfig config) {
+        this.redisTemplate = redisTemplate;
+        this.timeoutMillis = TimeUnit.SECONDS.toMillis(config.getCaptchaTimeoutSeconds());
+    }
+
+    public void setExpiryHandler(Consumer<List<PendingCaptcha>> expiryHandler) {
+        this.expiryHandler = expiryHandler;
+    }
+
+    /**
+     * Ставит таймаут каптчи. Если у пользователя в этом чате уже была каптча, она отменяется и возвращается.
+     */
+    public PendingCaptcha schedule(Long chatId, Long userId, Integer messageId) {
+        return schedule(new PendingCaptcha(chatId, userId, messageId), System.currentTimeMillis() + timeoutMillis);
+    }
+
+    /**
+     * Ставит таймауты всем пользователям общей каптчи с одним сроком, чтобы они истекли в одном тике.
+     * Возвращает отмененные прежние каптчи этих пользователей.
+     */
+    public List<PendingCaptcha> scheduleAll(Long chatId, List<Long> userIds, Integer messageId) {
+        long deadlineMillis = System.currentTimeMillis() + timeoutMillis;
+        List<PendingCaptcha> replaced = new ArrayList<>();
+        for (Long userId : userIds) {
+            PendingCaptcha previous = schedule(new PendingCaptcha(chatId, userId, messageId), deadlineMillis);
+            if (previous != null) {
+                replaced.add(previous);
+            }
+        }
+        return replaced;
+    }
+
+    private PendingCaptcha schedule(PendingCaptcha captcha, long deadlineMillis) {
+        TimingWheel.Timeout<PendingCaptcha> timeout = wheel.schedule(captcha, deadlineMillis);
+        TimingWheel.Timeout<PendingCaptcha> previous = pending.put(new Key(captcha.chatId(), captcha.userId()), timeout);
+        PendingCaptcha replaced = previous != null && wheel.cancel(previous) ? previous.payload() : null;
+        // та же каптча (тот же пользователь дважды в пачке) - тот же элемент в Redis, удалять его нельзя
+        if (replaced != null && !replaced.equals(captcha)) {
+            unpersist(List.of(replaced));
+        }
+        persist(captcha, deadlineMillis);
+        return replaced;
+    }
+
+    /**
+     * Отменяет таймаут и возвращает отмененную каптчу или null, если ее уже нет.
+     */
+    public PendingCaptcha cancel(Long chatId, Long userId) {
+        TimingWheel.Timeout<PendingCaptcha> timeout = pending.remove(new Key(chatId, userId));
+        if (timeout == null || !wheel.cancel(timeout)) {
+            return null;
+        }
+        unpersist(List.of(timeout.payload()));
+        return timeout.payload();
+    }
+
+    public PendingCaptcha getPending(Long chatId, Long userId) {
+        TimingWheel.Timeout<PendingCaptcha> timeout = pending.get(new Key(chatId, userId));
+        return timeout == null ? null : timeout.payload();
+    }
+
+    public List<PendingCaptcha> getPendingCaptchas() {
+        List<PendingCaptcha> captchas = new ArrayList<>(pending.size());
+        for (TimingWheel.Timeout<PendingCaptcha> timeout : pending.values()) {
+            captchas.add(timeout.payload());
+        }
+        return captchas;
+    }
+
+    @PostConstruct
+    public void restorePending() {
+        Set<ZSetOperations.TypedTuple<String>> entries;
+        try {
+            entries = redisTemplate.opsForZSet().rangeWithScores(PENDING_KEY, 0, -1);
+        } catch (RuntimeException e) {
+            log.error("Не удалось загрузить незавершенные каптчи: {}", e.getMessage());
+            return;
+        }
+        if (entries == null || entries.isEmpty()) {
+            return;
+        }
+        for (ZSetOperations.TypedTuple<String> entry : entries) {
+            PendingCaptcha captcha = PendingCaptcha.parse(entry.getValue());
+            if (captcha == null || entry.getScore() == null) {
+                log.warn("Пропущена некорректная запись каптчи: {}", entry.getValue());
+                continue;
+            }
+            // просроченные за время простоя сработают на ближайшем тике
+            TimingWheel.Timeout<PendingCaptcha> timeout = wheel.schedule(captcha, entry.getScore().longValue());
+            TimingWheel.Timeout<PendingCaptcha> previous = pending.put(new Key(captcha.chatId(), captcha.userId()), timeout);
+            if (previous != null && wheel.cancel(previous)) {
+                unpersist(List.of(previous.payload()));
+            }
+        }
+        log.info("Восстановлено незавершенных каптч: {}", pending.size());
+    }
+
+    @Scheduled(fixedRate = TICK_MILLIS)
+    public void tick() {
+        List<TimingWheel.Timeout<PendingCaptcha>> expired = wheel.advance(System.currentTimeMillis());
+        if (expired.isEmpty()) {
+            return;
+        }
+        List<PendingCaptcha> batch = new ArrayList<>(expired.size());
+        for (TimingWheel.Timeout<PendingCaptcha> timeout : expired) {
+            PendingCaptcha captcha = timeout.payload();
+            pending.remove(new Key(captcha.chatId(), captcha.userId()), timeout);
+            batch.add(captcha);
+        }
+        unpersist(batch);
+        log.info("Истекло каптч за тик: {}", batch.size());
+        try {
+            expiryHandler.accept(batch);
+        } catch (RuntimeException e) {
+            log.error("Ошибка при обработке истекших каптч: {}", e.getMessage());
+        }
+    }
+
+    public int getPendingCount() {
+        return wheel.size();
+    }
+
+    private void persist(PendingCaptcha captcha, long deadlineMillis) {
+        try {
+            redisTemplate.opsForZSet().add(PENDING_KEY, captcha.format(), deadlineMillis);
+        } catch (RuntimeException e) {
+            // таймаут уже стоит в колесе, потеряется только восстановление после рестарта
+            log.error("Не удалось сохранить каптчу пользователя {}: {}", captcha.userId(), e.getMessage());
+        }
+    }
+
+    private void unpersist(List<PendingCaptcha> captchas) {
+        Object[] members = captchas.stream().map(PendingCaptcha::format).toArray();
+        try {
+            redisTemplate.opsForZSet().remove(PENDING_KEY, members);
+        } catch (RuntimeException e) {
+            log.error("Не удалось удалить каптчи из Redis: {}", e.getMessage());
+        }
+    }
+
+    public record PendingCaptcha(Long chatId, Long userId, Integer messageId) {
+
+        String format() {
+            return chatId + ":" + userId + ":" + messageId;
+        }
+
+        static PendingCaptcha parse(String value) {
+            String[] parts = value == null ? new String[0] : value.split(":");
+            if (parts.length != 3) {
+                return null;
+            }
+            try {
+                return new PendingCaptcha(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    private record Key(long chatId, long userId) {
+    }
+}
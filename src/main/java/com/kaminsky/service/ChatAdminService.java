@@ -1,63 +1,185 @@
 package com.kaminsky.service;
 
+import com.kaminsky.config.BotConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatAdministrators;
+import org.telegram.telegrambots.meta.api.objects.ChatMemberUpdated;
 import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMember;
 
-import java.util.List;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Кэш администраторов чатов. Записи обновляются в фоне, начиная с 3/4 bot.admins.ttl-minutes,
+ * до конца обновления отдается прежний список. Параллельные загрузки по одному чату делают
+ * один запрос к Telegram, а события chat_member обновляют список сразу.
+ */
 @Slf4j
 @Service
 public class ChatAdminService {
 
+    private static final double REFRESH_AHEAD_FRACTION = 0.75;
+    private static final long ANY_VERSION = -1;
+
     private final MessageService messageService;
-    private final Map<Long, List<Long>> chatAdministrators = new ConcurrentHashMap<>();
+    private final Map<Long, AdminEntry> chatAdministrators = new ConcurrentHashMap<>();
+    // обратный индекс: пользователь -> чаты, где он администратор
+    private final Map<Long, Set<Long>> chatsByAdmin = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<Set<Long>>> inFlight = new ConcurrentHashMap<>();
+    // счетчик событий chat_member по чату: загрузка, начатая до события, не должна его перезаписать
+    private final Map<Long, Long> memberUpdateVersions = new ConcurrentHashMap<>();
+    private final long refreshAfterMillis;
 
     @Autowired
-    public ChatAdminService(MessageService messageService) {
+    public ChatAdminService(MessageService messageService, BotConfig config) {
         this.messageService = messageService;
+        this.refreshAfterMillis = (long) (TimeUnit.MINUTES.toMillis(config.getAdminsTtlMinutes()) * REFRESH_AHEAD_FRACTION);
     }
 
     public void registerAdministrators(Long chatId) {
-        GetChatAdministrators getChatAdministrators = new GetChatAdministrators();
-        getChatAdministrators.setChatId(chatId.toString());
+        try {
+            Set<Long> administratorIds = loadAdministrators(chatId).join();
+            log.info("Зарегистрированы администраторы чата {}: {}", chatId, administratorIds);
+        } catch (CompletionException | CancellationException e) {
+            log.error("Не удалось обновить администраторов чата {}: {}", chatId, e.getMessage());
+        }
+    }
 
-        List<ChatMember> administrators = messageService.executeGetChatAdministrators(getChatAdministrators);
-        List<Long> administratorIds = administrators.stream()
-                .map(admin -> admin.getUser().getId())
-                .collect(Collectors.toList());
+    /**
+     * Отвечает из кэша и при устаревшей записи обновляет ее в фоне, поток обработки не ждет Telegram.
+     * Исключение - чат, по которому записи еще нет совсем (первое обращение): тогда ждем общий запрос.
+     */
+    public boolean isAdmin(Long chatId, Long userId) {
+        AdminEntry entry = chatAdministrators.get(chatId);
+        if (entry != null) {
+            if (System.currentTimeMillis() - entry.loadedAtMillis() >= refreshAfterMillis) {
+                loadAdministrators(chatId);
+            }
+            return entry.adminIds().contains(userId);
+        }
+        try {
+            return loadAdministrators(chatId).join().contains(userId);
+        } catch (CompletionException | CancellationException e) {
+            return false;
+        }
+    }
 
-        chatAdministrators.put(chatId, administratorIds);
-        log.info("Зарегистрированы администраторы чата {}: {}", chatId, administratorIds);
+    public boolean isAdmin(Long userId) {
+        return chatsByAdmin.containsKey(userId);
+    }
 
+    public Set<Long> getAdministeredChats(Long userId) {
+        Set<Long> chatIds = chatsByAdmin.get(userId);
+        return chatIds == null ? Set.of() : Set.copyOf(chatIds);
     }
 
-    public boolean isAdmin(Long chatId, Long userId) {
-        List<Long> admins = chatAdministrators.get(chatId);
-        if (admins == null) {
-            registerAdministrators(chatId);
-            admins = chatAdministrators.get(chatId);
+    public void onChatMemberUpdated(ChatMemberUpdated chatMemberUpdated) {
+        Long chatId = chatMemberUpdated.getChat().getId();
+        ChatMember newMember = chatMemberUpdated.getNewChatMember();
+        Long userId = newMember.getUser().getId();
+        boolean isAdmin = isAdminStatus(newMember.getStatus());
+        chatAdministrators.compute(chatId, (id, entry) -> {
+            memberUpdateVersions.merge(chatId, 1L, Long::sum);
+            if (entry == null || entry.adminIds().contains(userId) == isAdmin) {
+                return entry;
+            }
+            if (isAdmin) {
+                addToReverseIndex(userId, chatId);
+            } else {
+                removeFromReverseIndex(userId, chatId);
+            }
+            Set<Long> adminIds = new HashSet<>(entry.adminIds());
+            if (isAdmin) {
+                adminIds.add(userId);
+            } else {
+                adminIds.remove(userId);
+            }
+            log.info("Пользователь {} в чате {} {}", userId, chatId, isAdmin ? "стал администратором" : "больше не администратор");
+            return new AdminEntry(Set.copyOf(adminIds), entry.loadedAtMillis());
+        });
+    }
+
+    public void putIntoChatAdministrators(Long chatId, Collection<Long> userIds) {
+        replaceEntry(chatId, new AdminEntry(Set.copyOf(userIds), System.currentTimeMillis()), ANY_VERSION);
+    }
+
+    private CompletableFuture<Set<Long>> loadAdministrators(Long chatId) {
+        CompletableFuture<Set<Long>> created = new CompletableFuture<>();
+        CompletableFuture<Set<Long>> existing = inFlight.putIfAbsent(chatId, created);
+        if (existing != null) {
+            return existing;
         }
-        return admins != null && admins.contains(userId);
+
+        long startVersion = memberUpdateVersions.getOrDefault(chatId, 0L);
+        GetChatAdministrators getChatAdministrators = new GetChatAdministrators();
+        getChatAdministrators.setChatId(chatId.toString());
+        messageService.executeGetChatAdministratorsAsync(getChatAdministrators).whenComplete((administrators, e) -> {
+            if (e != null || administrators == null) {
+                inFlight.remove(chatId, created);
+                created.completeExceptionally(e != null ? e : new IllegalStateException("Пустой список администраторов"));
+                return;
+            }
+            Set<Long> administratorIds = administrators.stream()
+                    .map(admin -> admin.getUser().getId())
+                    .collect(Collectors.toUnmodifiableSet());
+            AdminEntry loaded = new AdminEntry(administratorIds, System.currentTimeMillis());
+            AdminEntry current = replaceEntry(chatId, loaded, startVersion);
+            if (current != loaded) {
+                log.info("Список администраторов чата {} изменился во время загрузки, ответ отброшен", chatId);
+            }
+            inFlight.remove(chatId, created);
+            created.complete(current != null ? current.adminIds() : administratorIds);
+        });
+        return created;
     }
 
-    public boolean isAdmin(Long userId) {
-        return chatAdministrators.values().stream()
-                .flatMap(List::stream)
-                .anyMatch(admin -> admin.equals(userId));
+    // compute держит блокировку записи чата, поэтому изменения индекса по одному чату не перемешиваются;
+    // возвращает запись, оставшуюся в кэше: новую или прежнюю, если с начала загрузки пришло событие chat_member
+    private AdminEntry replaceEntry(Long chatId, AdminEntry newEntry, long loadVersion) {
+        return chatAdministrators.compute(chatId, (id, oldEntry) -> {
+            if (loadVersion != ANY_VERSION && memberUpdateVersions.getOrDefault(chatId, 0L) != loadVersion) {
+                return oldEntry;
+            }
+            Set<Long> oldIds = oldEntry == null ? Set.of() : oldEntry.adminIds();
+            for (Long userId : oldIds) {
+                if (!newEntry.adminIds().contains(userId)) {
+                    removeFromReverseIndex(userId, chatId);
+                }
+            }
+            for (Long userId : newEntry.adminIds()) {
+                if (!oldIds.contains(userId)) {
+                    addToReverseIndex(userId, chatId);
+                }
+            }
+            return newEntry;
+        });
     }
 
+    private void addToReverseIndex(Long userId, Long chatId) {
+        chatsByAdmin.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(chatId);
+    }
+
+    private void removeFromReverseIndex(Long userId, Long chatId) {
+        chatsByAdmin.computeIfPresent(userId, (id, chatIds) -> {
+            chatIds.remove(chatId);
+            return chatIds.isEmpty() ? null : chatIds;
+        });
+    }
 
-    public Map<Long, List<Long>> getChatAdministrators() {
-        return chatAdministrators;
+    private static boolean isAdminStatus(String status) {
+        return "administrator".equals(status) || "creator".equals(status);
     }
 
-    public void putIntoChatAdministrators(Long chatId, List<Long> userIds) {
-        chatAdministrators.put(chatId, userIds);
+    private record AdminEntry(Set<Long> adminIds, long loadedAtMillis) {
     }
 }
@@ -4,14 +4,16 @@ import com.kaminsky.config.BotConfig;
 import com.kaminsky.finals.BotFinalVariables;
 import com.kaminsky.model.KeyWord;
 import com.kaminsky.model.repositories.KeyWordRepository;
+import com.kaminsky.util.ParsedCommand;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.objects.Message;
 
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
@@ -22,18 +24,27 @@ public class CommandHandler {
     private final MessageService messageService;
     private final BotConfig config;
     private final KeyWordRepository keyWordRepository;
+    private final KeyWordMatcher keyWordMatcher;
+    private final ConversationStateService conversationStateService;
+    private final Map<String, Consumer<Message>> privateCommands = new HashMap<>();
+    private final Map<String, Consumer<Message>> groupCommands = new HashMap<>();
 
     @Autowired
     public CommandHandler(UserService userService,
                           @Lazy AdminService adminService,
                           MessageService messageService,
                           BotConfig config,
-                          KeyWordRepository keyWordRepository) {
+                          KeyWordRepository keyWordRepository,
+                          KeyWordMatcher keyWordMatcher,
+                          ConversationStateService conversationStateService) {
         this.userService = userService;
         this.adminService = adminService;
         this.messageService = messageService;
         this.config = config;
         this.keyWordRepository = keyWordRepository;
+        this.keyWordMatcher = keyWordMatcher;
+        this.conversationStateService = conversationStateService;
+        registerCommands();
     }
 
     public void handleMessage(Message message) {
@@ -47,69 +58,71 @@ public class CommandHandler {
         }
     }
 
+    private void registerCommands() {
+        privateCommands.put("/start", message -> {
+            adminService.registerUser(message);
+            messageService.startCommandReceived(message.getChatId(), message.getChat().getFirstName());
+        });
+        privateCommands.put("/help", message -> messageService.sendMessage(message.getChatId(), BotFinalVariables.HELP_TEXT));
+        privateCommands.put("/config", message -> adminService.handleConfigCommand(message.getChatId(), message));
+        privateCommands.put("/send", this::handleSendCommand);
+
+        for (AdminCommand command : AdminCommand.values()) {
+            groupCommands.put(command.getCommand(), message -> adminService.handleAdminCommandWithReply(
+                    message.getChatId(), message.getFrom().getId(), command, message));
+        }
+        groupCommands.put("/wipe", message -> adminService.wipeAllMessages(message.getChatId(), message));
+        groupCommands.put("/update", message -> adminService.updateCommandReceived(message.getChatId(), message));
+    }
+
     public void handleCommand(Message message) {
-        String messageText = message.getText().trim();
+        ParsedCommand command = ParsedCommand.parse(message.getText());
+        // команды, адресованные другим ботам в группе, не трогаем
+        if (command == null || !command.isAddressedTo(config.getBotName())) {
+            return;
+        }
         Long chatId = message.getChatId();
-        Long userId = message.getFrom().getId();
         Boolean isGroupChat = message.getChat().isGroupChat() || message.getChat().isSuperGroupChat();
         Boolean isPrivateChat = message.getChat().isUserChat();
 
         if (isPrivateChat) {
-            if (messageText.startsWith("/send") && config.getOwnerId().equals(userId)) {
-                if (messageText.length() > 6) {
-                    String textToSend = messageText.substring(6).trim();
-                    userService.sendToAllUsers(textToSend);
-                    messageService.sendMessage(chatId, "Сообщение отправлено всем пользователям");
-                } else {
-                    messageService.sendMessage(chatId, "Пожалуйста, укажите текст сообщения после команды /send");
-                }
-                return;
-            }
-
-            switch (messageText) {
-                case "/start":
-                    adminService.registerUser(message);
-                    messageService.startCommandReceived(chatId, message.getChat().getFirstName());
-                    break;
-                case "/help":
-                    messageService.sendMessage(chatId, BotFinalVariables.HELP_TEXT);
-                    break;
-                case "/config":
-                    adminService.handleConfigCommand(chatId, message);
-                    break;
-                default:
-                    if (!userService.isCommandHandled()) {
-                        messageService.sendMessage(chatId, BotFinalVariables.UNKNOWN_COMMAND);
-                    } else {
-                        userService.setCommandHandled(false);
-                    }
-                    break;
+            Consumer<Message> handler = privateCommands.get(command.name());
+            if (handler != null) {
+                handler.accept(message);
+            } else {
+                replyToUnknownPrivateCommand(chatId);
             }
         }
 
         if (isGroupChat) {
-            switch (messageText) {
-                case "/ban@sokrytbot":
-                case "/mute@sokrytbot":
-                case "/unmute@sokrytbot":
-                case "/warn@sokrytbot":
-                case "/check@sokrytbot":
-                case "/reset@sokrytbot":
-                    adminService.handleAdminCommandWithReply(chatId, userId, messageText, message);
-                    break;
-                case "/wipe@sokrytbot":
-                adminService.wipeAllMessages(chatId, message);
-                    break;
-                case "/update@sokrytbot":
-                adminService.updateCommandReceived(chatId, message);
-                break;
-                default:
-                    messageService.sendMessage(chatId, BotFinalVariables.UNKNOWN_COMMAND, message.getMessageId());
-                    break;
+            Consumer<Message> handler = groupCommands.get(command.name());
+            if (handler != null) {
+                handler.accept(message);
+            } else {
+                messageService.sendMessage(chatId, BotFinalVariables.UNKNOWN_COMMAND, message.getMessageId());
             }
         }
     }
 
+    private void handleSendCommand(Message message) {
+        Long chatId = message.getChatId();
+        if (!config.getOwnerId().equals(message.getFrom().getId())) {
+            replyToUnknownPrivateCommand(chatId);
+            return;
+        }
+        String textToSend = ParsedCommand.parse(message.getText()).arguments();
+        if (!textToSend.isEmpty()) {
+            userService.sendToAllUsers(textToSend);
+            messageService.sendMessage(chatId, "Сообщение отправлено всем пользователям");
+        } else {
+            messageService.sendMessage(chatId, "Пожалуйста, укажите текст сообщения после команды /send");
+        }
+    }
+
+    private void replyToUnknownPrivateCommand(Long chatId) {
+        messageService.sendMessage(chatId, BotFinalVariables.UNKNOWN_COMMAND);
+    }
+
 
     public void handleNonCommandMessage(Message message) {
         Long chatId = message.getChatId();
@@ -122,51 +135,44 @@ public class CommandHandler {
         Boolean isReplyToBot = message.isReply() &&
                 message.getReplyToMessage().getFrom().getUserName().equals(config.getBotName());
         if (isBotMentioned || isReplyToBot) {
-            messageService.sendMessage(chatId, "Чего надо?", message.getMessageId());
+            messageService.sendCosmeticMessage(chatId, "Чего надо?", message.getMessageId());
         }
 
-        if (isPrivateChat) {
-            handleIncomingWelcomeTextSettingMessage(message);
-            handleIncomingRecurrentTextSettingMessage(message);
-            handleUnbanPetition(message);
-            handleIncomingKeyWordsMessage(message);
-        switch (messageText) {
-            case "сайт проекта":
-                String projectLink = "[Сайт проекта «Сокрытая Русь»](https://sokryt.ru)";
-                messageService.sendMarkdownMessage(chatId, projectLink);
-                break;
-            case "петиция о разбане":
-                String askText = "Сформулируйте Ваше прошение о разбане в одно сообщение";
-                messageService.sendMessage(chatId, askText);
-                userService.setAwaitingUnbanPetition(true);
-                break;
-            case "FAQ о Единоверии":
-                String faq = "Единоверие - одно из течений поповского старообрядчества, находящееся под юрисдикцией Русской Православной Церкви.\n" +
-                        "По определению епископа Симона (Шлеёва), «единоверие есть примирённое с Русской и Вселенской Церковью старообрядчество».\n\n" +
-                        "Q: Нужно ли совершать некий чин присоединения в Единоверие для обычных прихожан РПЦ?\n" +
-                        "A: Нет, достаточно просто начать ходить в ближайший единоверческий приход.\n\n" +
-                        "Q: Почитают ли единоверцы послераскольных святых?\n" +
-                        "A: Согласно поместному собору Русской Православной Церкви 1918 г., единоверцы совершают богослужения исключительно по старопечатным книгам. " +
-                        "Таким образом, на единоверческих службах послераскольные святые не упоминаются, однако как чада Русской Православной Церкви, единоверцы почитают и признают святость всех святых, канонизированных РПЦ.";
-                messageService.sendMessage(chatId, faq);
-                break;
-            case "вступить в чат":
-                String mapLink = "[Главный чат Общества](https://t.me/ukhtomsky_chat)";
-                messageService.sendMarkdownMessage(chatId, mapLink);
-                break;
-            default:
-                if (!userService.isCommandHandled()) {
+        if (isPrivateChat && !handleConversationReply(message)) {
+            switch (messageText) {
+                case "сайт проекта":
+                    String projectLink = "[Сайт проекта «Сокрытая Русь»](https://sokryt.ru)";
+                    messageService.sendMarkdownMessage(chatId, projectLink);
+                    break;
+                case "петиция о разбане":
+                    String askText = "Сформулируйте Ваше прошение о разбане в одно сообщение";
+                    messageService.sendMessage(chatId, askText);
+                    conversationStateService.start(message.getFrom().getId(), ConversationStateService.Step.UNBAN_PETITION, null);
+                    break;
+                case "FAQ о Единоверии":
+                    String faq = "Единоверие - одно из течений поповского старообрядчества, находящееся под юрисдикцией Русской Православной Церкви.\n" +
+                            "По определению епископа Симона (Шлеёва), «единоверие есть примирённое с Русской и Вселенской Церковью старообрядчество».\n\n" +
+                            "Q: Нужно ли совершать некий чин присоединения в Единоверие для обычных прихожан РПЦ?\n" +
+                            "A: Нет, достаточно просто начать ходить в ближайший единоверческий приход.\n\n" +
+                            "Q: Почитают ли единоверцы послераскольных святых?\n" +
+                            "A: Согласно поместному собору Русской Православной Церкви 1918 г., единоверцы совершают богослужения исключительно по старопечатным книгам. " +
+                            "Таким образом, на единоверческих службах послераскольные святые не упоминаются, однако как чада Русской Православной Церкви, единоверцы почитают и признают святость всех святых, канонизированных РПЦ.";
+                    messageService.sendMessage(chatId, faq);
+                    break;
+                case "вступить в чат":
+                    String mapLink = "[Главный чат Общества](https://t.me/ukhtomsky_chat)";
+                    messageService.sendMarkdownMessage(chatId, mapLink);
+                    break;
+                default:
                     messageService.sendMessage(chatId, BotFinalVariables.UNKNOWN_COMMAND);
-                } else {
-                    userService.setCommandHandled(false);
-                }
-                break;
-        }
+                    break;
+            }
         }
 
         if (isGroupChat) {
-            List<String> keyWords = getKeyWordsList();
-            if (isContainKeyWords(keyWords, messageText)) {
+            String keyWord = keyWordMatcher.findKeyWord(messageText);
+            if (keyWord != null) {
+                log.info("Сработало слово-триггер \"{}\" в чате {}", keyWord, chatId);
                 messageService.sendRandomGif(chatId);
                 adminService.muteUser(chatId, message.getFrom().getId(), message.getFrom().getFirstName(), message, true);
             }
@@ -182,70 +188,53 @@ public class CommandHandler {
         log.info("Прощаемся с пользователем {} : {}", leftUser.getFirstName(), leftUser.getId());
     }
 
-    public void handleIncomingKeyWordsMessage(Message message) {
-        if (userService.isAwaitingKeyWords()) {
-            Long chatId = message.getChatId();
-            String text = message.getText();
-            String[] words = text.split(",");
-            for (String word : words) {
-                KeyWord keyWord = new KeyWord();
-                keyWord.setKeyWord(word.trim());
-                keyWordRepository.save(keyWord);
-            }
-            userService.setCommandHandled(true);
-            userService.setAwaitingKeyWords(false);
-            messageService.sendMessage(chatId, "Слова-триггеры успешно выставлены");
-            log.info("Выставили слова-триггеры");
+    // ответ на вопрос бота в личном чате: одна проверка состояния пользователя вместо перебора всех флагов
+    private boolean handleConversationReply(Message message) {
+        ConversationStateService.Conversation conversation = conversationStateService.take(message.getFrom().getId());
+        if (conversation == null) {
+            return false;
+        }
+        switch (conversation.step()) {
+            case WELCOME_TEXT -> handleIncomingWelcomeTextSettingMessage(message, conversation.targetChatId());
+            case RECURRENT_TEXT -> handleIncomingRecurrentTextSettingMessage(message, conversation.targetChatId());
+            case KEY_WORDS -> handleIncomingKeyWordsMessage(message);
+            case UNBAN_PETITION -> handleUnbanPetition(message);
         }
+        return true;
     }
 
-    public void handleIncomingWelcomeTextSettingMessage(Message message) {
+    public void handleIncomingKeyWordsMessage(Message message) {
         Long chatId = message.getChatId();
         String text = message.getText();
-        if (userService.isAwaitingWelcomeText() && userService.getCurrentChatIdForWelcomeText() != null) {
-            userService.saveWelcomeText(userService.getCurrentChatIdForWelcomeText(), text);
-            userService.setAwaitingWelcomeText(false);
-            userService.setCurrentChatIdForWelcomeText(null);
-            messageService.sendMessage(chatId, "Приветственное сообщение успешно сохранено!");
-            userService.setCommandHandled(true);
+        String[] words = text.split(",");
+        for (String word : words) {
+            KeyWord keyWord = new KeyWord();
+            keyWord.setKeyWord(word.trim());
+            keyWordRepository.save(keyWord);
         }
-        log.info("Выставили привественное сообщение");
+        keyWordMatcher.reload();
+        messageService.sendMessage(chatId, "Слова-триггеры успешно выставлены");
+        log.info("Выставили слова-триггеры");
     }
 
-    public void handleIncomingRecurrentTextSettingMessage(Message message) {
+    public void handleIncomingWelcomeTextSettingMessage(Message message, Long targetChatId) {
         Long chatId = message.getChatId();
-        String text = message.getText();
-        if (userService.isAwaitingRecurrentText() && userService.getCurrentChatIdForRecurrentText() != null) {
-            userService.saveRecurrentText(userService.getCurrentChatIdForRecurrentText(), text);
-            userService.setAwaitingRecurrentText(false);
-            userService.setCurrentChatIdForRecurrentText(null);
-            messageService.sendMessage(chatId, "Рекуррентное сообщение успешно сохранено!");
-            userService.setCommandHandled(true);
-        }
-        log.info("Выставили рекуррентное сообщение");
-    }
-    public void handleUnbanPetition(Message message) {
-        if (userService.isAwaitingUnbanPetition()) {
-            Long chatId = message.getChatId();
-            userService.forwardUnbanPetition(chatId, message);
-            messageService.sendMessage(chatId, "Ваше сообщение отправлено администрации. С Вами свяжутся");
-            userService.setAwaitingUnbanPetition(false);
-            userService.setCommandHandled(true);
-            log.info("Прошение о разбане отправлено от {}", chatId);
-        }
+        userService.saveWelcomeText(targetChatId, message.getText());
+        messageService.sendMessage(chatId, "Приветственное сообщение успешно сохранено!");
+        log.info("Выставили привественное сообщение");
     }
 
-    private boolean isContainKeyWords(List<String> words, String messageText) {
-        String text = messageText.toLowerCase();
-        for (String word : words) {
-            if (text.contains(word.toLowerCase())) {
-                return true;
-            }
-        }
-        return false;
+    public void handleIncomingRecurrentTextSettingMessage(Message message, Long targetChatId) {
+        Long chatId = message.getChatId();
+        userService.saveRecurrentText(targetChatId, message.getText());
+        messageService.sendMessage(chatId, "Рекуррентное сообщение успешно сохранено!");
+        log.info("Выставили рекуррентное сообщение");
     }
 
-    protected List<String> getKeyWordsList() {
-        return messageService.getKeyWords();
+    public void handleUnbanPetition(Message message) {
+        Long chatId = message.getChatId();
+        userService.forwardUnbanPetition(chatId, message);
+        messageService.sendMessage(chatId, "Ваше сообщение отправлено администрации. С Вами свяжутся");
+        log.info("Прошение о разбане отправлено от {}", chatId);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,114 @@
+package com.kaminsky.service;
+
+import com.kaminsky.config.BotConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Что бот ждет от пользователя в личном чате: текст приветствия, слова-триггеры и т.п.
+ * Состояние своё у каждого пользователя и живет ограниченное время. Следующее сообщение
+ * забирает состояние атомарно, поэтому ответ не обработается дважды.
+ * При включенном Redis состояние видно всем экземплярам бота.
+ */
+@Slf4j
+@Service
+public class ConversationStateService {
+
+    static final String KEY_PREFIX = "sokrytbot:conversation:";
+
+    public enum Step {
+        WELCOME_TEXT,
+        RECURRENT_TEXT,
+        KEY_WORDS,
+        UNBAN_PETITION
+    }
+
+    /**
+     * @param targetChatId чат, который настраивается; null, если шаг не привязан к чату
+     */
+    public record Conversation(Step step, Long targetChatId) {
+
+        String format() {
+            return targetChatId == null ? step.name() : step.name() + ":" + targetChatId;
+        }
+
+        static Conversation parse(String value) {
+            if (value == null) {
+                return null;
+            }
+            int separator = value.indexOf(':');
+            if (separator < 0) {
+                return new Conversation(Step.valueOf(value), null);
+            }
+            return new Conversation(Step.valueOf(value.substring(0, separator)), Long.parseLong(value.substring(separator + 1)));
+        }
+    }
+
+    private record Entry(Conversation conversation, long expiresAtMillis) {
+    }
+
+    private final Map<Long, Entry> conversations = new ConcurrentHashMap<>();
+    private final StringRedisTemplate redisTemplate;
+    private final boolean redisEnabled;
+    private final long ttlMillis;
+
+    @Autowired
+    public ConversationStateService(StringRedisTemplate redisTemplate, BotConfig config) {
+        this.redisTemplate = redisTemplate;
+        this.redisEnabled = config.isConversationRedisEnabled();
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(config.getConversationTtlMinutes());
+    }
+
+    public void start(Long userId, Step step, Long targetChatId) {
+        Conversation conversation = new Conversation(step, targetChatId);
+        conversations.put(userId, new Entry(conversation, System.currentTimeMillis() + ttlMillis));
+        if (redisEnabled) {
+            try {
+                redisTemplate.opsForValue().set(KEY_PREFIX + userId, conversation.format(), Duration.ofMillis(ttlMillis));
+            } catch (RuntimeException e) {
+                log.error("Не удалось сохранить состояние диалога с {} в Redis: {}", userId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Забирает ожидаемый шаг пользователя. Возвращает null, если бот ничего не ждет или время вышло.
+     */
+    public Conversation take(Long userId) {
+        Entry local = conversations.remove(userId);
+        if (redisEnabled) {
+            try {
+                return Conversation.parse(redisTemplate.opsForValue().getAndDelete(KEY_PREFIX + userId));
+            } catch (RuntimeException e) {
+                log.error("Не удалось получить состояние диалога с {} из Redis: {}", userId, e.getMessage());
+            }
+        }
+        if (local == null || local.expiresAtMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return local.conversation();
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        int before = conversations.size();
+        conversations.values().removeIf(entry -> entry.expiresAtMillis() <= now);
+        int evicted = before - conversations.size();
+        if (evicted > 0) {
+            log.info("Удалено {} просроченных состояний диалога", evicted);
+        }
+    }
+
+    public int size() {
+        return conversations.size();
+    }
+}
@@ -0,0 +1,67 @@
+package com.kaminsky.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * file_id гифок, уже загруженных в Telegram по URL. Повторная отправка по file_id не заставляет
+ * Telegram заново скачивать и обрабатывать анимацию. Соответствие хранится в хеше Redis.
+ */
+@Slf4j
+@Service
+public class GifFileIdCache {
+
+    static final String FILE_IDS_KEY = "sokrytbot:gif-file-ids";
+
+    private final StringRedisTemplate redisTemplate;
+    private final Map<String, String> fileIds = new ConcurrentHashMap<>();
+
+    @Autowired
+    public GifFileIdCache(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @PostConstruct
+    public void load() {
+        try {
+            Map<Object, Object> stored = redisTemplate.opsForHash().entries(FILE_IDS_KEY);
+            stored.forEach((url, fileId) -> fileIds.put(url.toString(), fileId.toString()));
+            log.info("Загружено file_id гифок: {}", fileIds.size());
+        } catch (RuntimeException e) {
+            log.error("Не удалось загрузить file_id гифок: {}", e.getMessage());
+        }
+    }
+
+    public String get(String url) {
+        return fileIds.get(url);
+    }
+
+    public void put(String url, String fileId) {
+        if (fileId == null || fileId.equals(fileIds.put(url, fileId))) {
+            return;
+        }
+        try {
+            redisTemplate.opsForHash().put(FILE_IDS_KEY, url, fileId);
+        } catch (RuntimeException e) {
+            log.error("Не удалось сохранить file_id гифки: {}", e.getMessage());
+        }
+    }
+
+    // file_id перестал приниматься Telegram: следующая отправка снова пойдет по URL
+    public void evict(String url) {
+        if (fileIds.remove(url) == null) {
+            return;
+        }
+        try {
+            redisTemplate.opsForHash().delete(FILE_IDS_KEY, url);
+        } catch (RuntimeException e) {
+            log.error("Не удалось удалить file_id гифки: {}", e.getMessage());
+        }
+    }
+}
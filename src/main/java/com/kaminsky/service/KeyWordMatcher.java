@@ -0,0 +1,56 @@
+package com.kaminsky.service;
+
+import com.kaminsky.util.AhoCorasickMatcher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Поиск слов-триггеров в сообщениях. Автомат пересобирается только при изменении набора слов.
+ */
+@Slf4j
+@Service
+public class KeyWordMatcher {
+
+    private final CachedDataService cachedDataService;
+    private volatile AhoCorasickMatcher matcher;
+    private volatile List<String> keyWords;
+
+    @Autowired
+    public KeyWordMatcher(CachedDataService cachedDataService) {
+        this.cachedDataService = cachedDataService;
+    }
+
+    public String findKeyWord(String text) {
+        AhoCorasickMatcher current = matcher;
+        if (current == null) {
+            current = rebuild();
+        }
+        return current.findFirst(text);
+    }
+
+    public synchronized AhoCorasickMatcher rebuild() {
+        List<String> words = cachedDataService.getKeyWords();
+        if (matcher == null || !words.equals(keyWords)) {
+            matcher = AhoCorasickMatcher.compile(words);
+            keyWords = words;
+            log.info("Собран автомат слов-триггеров: {} слов", matcher.size());
+        }
+        return matcher;
+    }
+
+    // вызывается после изменения слов в БД
+    public void reload() {
+        cachedDataService.evictKeyWords();
+        rebuild();
+    }
+
+    // другие экземпляры бота могли изменить слова, кэш в Redis у всех общий
+    @Scheduled(fixedRate = 300000)
+    public void refresh() {
+        rebuild();
+    }
+}
@@ -0,0 +1,102 @@
+package com.kaminsky.service;
+
+import com.kaminsky.config.BotConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatMember;
+import org.telegram.telegrambots.meta.api.objects.ChatMemberUpdated;
+import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMember;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кэш статусов участников чатов с коротким TTL. Обновляется по результатам собственных
+ * банов и ограничений бота и по событиям chat_member, поэтому команды модерации
+ * обычно обходятся без запроса GetChatMember.
+ */
+@Slf4j
+@Service
+public class MemberStatusService {
+
+    public static final String KICKED = "kicked";
+    public static final String RESTRICTED = "restricted";
+    public static final String MEMBER = "member";
+
+    private final MessageService messageService;
+    private final Map<Key, StatusEntry> statuses = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+
+    @Autowired
+    public MemberStatusService(MessageService messageService, BotConfig config) {
+        this.messageService = messageService;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(config.getMemberStatusTtlSeconds());
+    }
+
+    public boolean isBanned(Long chatId, Long userId) {
+        return KICKED.equals(getStatus(chatId, userId));
+    }
+
+    public String getStatus(Long chatId, Long userId) {
+        Key key = new Key(chatId, userId);
+        StatusEntry entry = statuses.get(key);
+        if (entry != null && System.currentTimeMillis() < entry.expiresAtMillis()) {
+            return entry.status();
+        }
+
+        GetChatMember getChatMember = new GetChatMember();
+        getChatMember.setChatId(chatId.toString());
+        getChatMember.setUserId(userId);
+        ChatMember chatMember = messageService.executeGetChatMember(getChatMember);
+        if (chatMember == null) {
+            // ошибку не кэшируем, следующая команда спросит Telegram снова
+            return null;
+        }
+        record(chatId, userId, chatMember.getStatus());
+        return chatMember.getStatus();
+    }
+
+    public void record(Long chatId, Long userId, String status) {
+        statuses.put(new Key(chatId, userId), new StatusEntry(status, System.currentTimeMillis() + ttlMillis));
+    }
+
+    // статус меняется только если Telegram подтвердил действие, иначе запись сбрасывается
+    public void recordOnSuccess(Long chatId, Long userId, String status, CompletableFuture<Boolean> result) {
+        result.whenComplete((ok, e) -> {
+            if (e == null && Boolean.TRUE.equals(ok)) {
+                record(chatId, userId, status);
+            } else {
+                invalidate(chatId, userId);
+            }
+        });
+    }
+
+    public void invalidate(Long chatId, Long userId) {
+        statuses.remove(new Key(chatId, userId));
+    }
+
+    public void onChatMemberUpdated(ChatMemberUpdated chatMemberUpdated) {
+        ChatMember newMember = chatMemberUpdated.getNewChatMember();
+        record(chatMemberUpdated.getChat().getId(), newMember.getUser().getId(), newMember.getStatus());
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+        statuses.values().removeIf(entry -> entry.expiresAtMillis() <= now);
+    }
+
+    public int size() {
+        return statuses.size();
+    }
+
+    private record Key(long chatId, long userId) {
+    }
+
+    private record StatusEntry(String status, long expiresAtMillis) {
+    }
+}
@@ -1,14 +1,13 @@
 package com.kaminsky.service;
 
-import com.kaminsky.events.*;
-import com.kaminsky.finals.BotFinalVariables;
-import com.kaminsky.model.KeyWord;
-import com.kaminsky.model.repositories.KeyWordRepository;
-import com.vdurmont.emoji.EmojiParser;
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.finals.MessageTemplates;
+import com.kaminsky.util.MarkdownEscaper;
+import com.kaminsky.util.MessageIdRing;
+import com.kaminsky.util.PendingMessageIndex;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.methods.ForwardMessage;
 import org.telegram.telegrambots.meta.api.methods.groupadministration.BanChatMember;
@@ -18,6 +17,7 @@ import org.telegram.telegrambots.meta.api.methods.groupadministration.RestrictCh
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
 import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
 import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMember;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
@@ -25,35 +25,65 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.ReplyKeyboardMar
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
 import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.KeyboardRow;
 import org.telegram.telegrambots.meta.api.methods.send.SendAnimation;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
 
+import java.io.Serializable;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 
 @Slf4j
 @Service
 public class MessageService {
 
-    private final Map<Long, List<Message>> chatMessages = new ConcurrentHashMap<>();
-    private final Map<Long, List<Message>> userMessages = new ConcurrentHashMap<>();
-    private final ApplicationEventPublisher eventPublisher;
-    private final KeyWordRepository keyWordRepository;
+    private static final String[] GIF_URLS = {
+            "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExdDg4NWoxZWJ6MGh0MXpkaGdrZHZqcGt3Y3JzZ2d3NnQzcDU0OWdsZyZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/NEHJpOX8vWHk9dzEjy/giphy.gif",
+            "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExcHo4MzV6c3U2Z2Vwd3U0Nm56NGhnNHVkc2Izb2F3OGo5NGlldXYyMSZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/5WUsLZLkZlMdO/giphy.gif",
+            "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExZnVvZnFsM3JwbnYwYjNpZGFpOGpjc2t3bW52c3NnMWZ0cm0wa2FxeCZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/jquDWJfPUMCiI/giphy.gif",
+            "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExMWExM3d6dDl4NXlnYmJoOWlieXU4NWE3dnYxejg3d2I0dnZtYmE1NyZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/Fkmgse8OMKn9C/giphy.gif",
+            "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExeHV0Zno0dnMycjk4c2Z0NzBuOXhmZzkzcXE5YjY0aTVldHljb25jMyZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/8nmLYpDYSTnOw/giphy.gif",
+            "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExYm55Z3V1dDQ2a3hyaHJqdXJsYXVzMzExNTFscGRkNHRiNWFqbHNjZCZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/l3q2K5jinAlChoCLS/giphy.gif",
+            "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExcmJiZXM2dnRyMnN3czdpaDVlMzl0c2Nma3ZnaHI3Z20wa2Nha2NsMSZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/JSueytO5O29yM/giphy.gif",
+            "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExZTRnNzFoM3Bvanhub3hweWo4anQ5b3RuNGYxM3ZybnlwZGZsc2gxYSZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/70orEIVDASzXW/giphy.gif",
+            "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExN3h0MTZ4OHp0OTUwdTUwdGRyeGJoNXlzNzltdzgxdWdoc3E5NXJ0NCZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/KeoW2fn76yv66qzpJw/giphy.gif",
+            "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExcDMwaHZzcjFyZmlqMmhxYXJpMzk2NDY5Z2Qyd3FubjNkazk1d2p3YSZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/A3V2IWHMlFD9x9NaPD/giphy.gif",
+            "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExNXcxanUweXNmaXl3bXliYWVnejJtcmNxNmlnbGpjdGVwOWRobmMyeiZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/Zhy0nWRKx6cKkTzxUF/giphy.gif",
+            "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExZ3l4c2czejBhZ2wxZjd0MTZla3N5NW5kNXV2aXQzMjV4NTI4aTUzNCZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/5TwN4gQI35fbl5F0C6/giphy.gif"
+    };
+
+    // Telegram не дает удалять сообщения старше 48 часов, хранить их id дольше нет смысла
+    private final Map<Long, MessageIdRing> chatMessages = new ConcurrentHashMap<>();
+    private final PendingMessageIndex pendingUserMessages;
+    private final TelegramApiClient apiClient;
+    private final int messageRingCapacity;
+    private final long messageMaxAgeSeconds;
+    private final GifFileIdCache gifFileIdCache;
+    private final UpdateDispatcher updateDispatcher;
 
     @Autowired
-    public MessageService(ApplicationEventPublisher eventPublisher, KeyWordRepository keyWordRepository) {
-        this.eventPublisher = eventPublisher;
-        this.keyWordRepository = keyWordRepository;
+    public MessageService(TelegramApiClient apiClient, BotConfig config, GifFileIdCache gifFileIdCache,
+                          UpdateDispatcher updateDispatcher) {
+        this.apiClient = apiClient;
+        this.gifFileIdCache = gifFileIdCache;
+        this.updateDispatcher = updateDispatcher;
+        this.messageRingCapacity = Math.max(1, config.getMessageRingCapacity());
+        this.messageMaxAgeSeconds = TimeUnit.HOURS.toSeconds(config.getMessageMaxAgeHours());
+        this.pendingUserMessages = new PendingMessageIndex(
+                TimeUnit.MINUTES.toMillis(config.getPendingUserTtlMinutes()),
+                config.getPendingUserMaxMessages());
     }
 
     public void startCommandReceived(Long chatId, String name) {
-        String answer = EmojiParser.parseToUnicode("Доброго здоровья, " + name + "!" + " :smiley:");
+        String answer = MessageTemplates.GREETING.render(name);
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText(answer);
@@ -93,10 +123,10 @@ public class MessageService {
         InlineKeyboardButton welcomeTextButton = new InlineKeyboardButton();
         InlineKeyboardButton recurrentTextButton = new InlineKeyboardButton();
 
-        welcomeTextButton.setCallbackData(BotFinalVariables.WELCOME_TEXT_BUTTON + ":" + targetChatId);
+        welcomeTextButton.setCallbackData(new CallbackPayload.WelcomeTextSetup(targetChatId).encode());
         welcomeTextButton.setText("Приветствие");
 
-        recurrentTextButton.setCallbackData(BotFinalVariables.RECURRENT_TEXT_BUTTON + ":" + targetChatId);
+        recurrentTextButton.setCallbackData(new CallbackPayload.RecurrentTextSetup(targetChatId).encode());
         recurrentTextButton.setText("Автосообщение");
 
         rowInLine.add(welcomeTextButton);
@@ -115,43 +145,82 @@ public class MessageService {
     }
 
     public void sayFarewellToUser(Long chatId, Long userId, String userFirstName, Integer messageId) {
-        String userLink = "<a href=\"tg://user?id=" + userId + "\">" + userFirstName + "</a>";
-        String farewellMessage = "Всего хорошего, " + userLink;
+        String farewellMessage = MessageTemplates.FAREWELL.render(userId, userFirstName);
 
-        sendHTMLMessage(chatId, farewellMessage, messageId);
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(farewellMessage);
+        message.setParseMode("HTML");
+        message.setReplyToMessageId(messageId);
+        executeMessage(message, OutboundPriority.COSMETIC);
+    }
+
+    public void sendCosmeticMessage(Long chatId, String textToSend, Integer replyToMessageId) {
+        if (!updateDispatcher.allowCosmeticReaction()) {
+            return;
+        }
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId.toString());
+        message.setText(textToSend);
+        message.setReplyToMessageId(replyToMessageId);
+        executeMessage(message, OutboundPriority.COSMETIC);
     }
 
-    public void executeEditMessage(EditMessageText editMessageText) {
-        eventPublisher.publishEvent(new EditMessageTextEvent(editMessageText));
-        log.info("Публикация события EditMessageTextEvent");
+    public CompletableFuture<Serializable> executeEditMessage(EditMessageText editMessageText) {
+        return apiClient.submit(editMessageText, OutboundPriority.COSMETIC).whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("Ошибка при редактировании сообщения: {}", e.getMessage());
+            } else {
+                log.info("Сообщение отредактировано в чате {}", editMessageText.getChatId());
+            }
+        });
     }
 
-    public void executeBanChatMember(BanChatMember banChatMember) {
-        eventPublisher.publishEvent(new BanChatMemberEvent(banChatMember));
-        log.info("Публикация события BanChatMemberEvent");
+    public CompletableFuture<Boolean> executeBanChatMember(BanChatMember banChatMember) {
+        return apiClient.submit(banChatMember).whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("Ошибка при бане пользователя: {}", e.getMessage());
+            } else {
+                log.info("Пользователь забанен в чате {}", banChatMember.getChatId());
+            }
+        });
     }
 
-    public void executeRestrictChatMember(RestrictChatMember restrictChatMember) {
-        eventPublisher.publishEvent(new RestrictChatMemberEvent(restrictChatMember));
-        log.info("Публикация события RestrictChatMemberEvent");
+    public CompletableFuture<Boolean> executeRestrictChatMember(RestrictChatMember restrictChatMember) {
+        return apiClient.submit(restrictChatMember).whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("Ошибка при обеззвучивании пользователя: {}", e.getMessage());
+            } else {
+                log.info("Пользователь обеззвучен в чате {}", restrictChatMember.getChatId());
+            }
+        });
     }
 
-    public void executeDeleteMessage(DeleteMessage deleteMessage) {
-        eventPublisher.publishEvent(new DeleteMessageEvent(deleteMessage));
-        log.info("Публикация события DeleteMessageEvent");
+    public CompletableFuture<Boolean> executeDeleteMessage(DeleteMessage deleteMessage) {
+        return apiClient.submit(deleteMessage).whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("Ошибка при удалении сообщения: {}", e.getMessage());
+            } else {
+                log.info("Сообщение ID {} удалено из чата {}", deleteMessage.getMessageId(), deleteMessage.getChatId());
+            }
+        });
     }
 
-    public void executeForwardMessage(ForwardMessage forwardMessage) {
-        eventPublisher.publishEvent(new ForwardMessageEvent(forwardMessage));
-        log.info("Публикация события ForwardMessageEvent");
+    public CompletableFuture<Message> executeForwardMessage(ForwardMessage forwardMessage) {
+        return apiClient.submit(forwardMessage).whenComplete((result, e) -> {
+            if (e != null) {
+                log.error("Ошибка при пересылке сообщения: {}", e.getMessage());
+            } else {
+                log.info("Сообщение переслано в чат {}", forwardMessage.getChatId());
+            }
+        });
     }
 
     public void sendMessage(Long chatId, String textToSend) {
         SendMessage message = new SendMessage();
         message.setChatId(chatId.toString());
         message.setText(textToSend);
-        eventPublisher.publishEvent(new SendMessageEvent(message));
-        log.info("Публикация события SendMessageEvent для чата {}", chatId);
+        executeMessage(message);
     }
 
     public void sendMessage(Long chatId, String textToSend, Integer replyToMessageId) {
@@ -159,8 +228,7 @@ public class MessageService {
         message.setChatId(chatId.toString());
         message.setText(textToSend);
         message.setReplyToMessageId(replyToMessageId);
-        eventPublisher.publishEvent(new SendMessageEvent(message));
-        log.info("Публикация события SendMessageEvent с ответом на сообщение для чата {}", chatId);
+        executeMessage(message);
     }
 
     public void sendHTMLMessage(Long chatId, String textToSend) {
@@ -168,8 +236,7 @@ public class MessageService {
         message.setChatId(chatId.toString());
         message.setText(textToSend);
         message.setParseMode("HTML");
-        eventPublisher.publishEvent(new SendMessageEvent(message));
-        log.info("Публикация события SendMessageEvent (HTML) для чата {}", chatId);
+        executeMessage(message);
     }
 
     public void sendHTMLMessage(Long chatId, String textToSend, Integer replyToMessageId) {
@@ -178,8 +245,7 @@ public class MessageService {
         message.setText(textToSend);
         message.setReplyToMessageId(replyToMessageId);
         message.setParseMode("HTML");
-        eventPublisher.publishEvent(new SendMessageEvent(message));
-        log.info("Публикация события SendMessageEvent (HTML) с ответом на сообщение для чата {}", chatId);
+        executeMessage(message);
     }
 
     public void sendHTMLMessageWithKeyboard(Long chatId, String text, InlineKeyboardMarkup keyboardMarkup, Integer replyToMessageId) {
@@ -190,8 +256,7 @@ public class MessageService {
         message.setReplyToMessageId(replyToMessageId);
         message.setReplyMarkup(keyboardMarkup);
 
-        eventPublisher.publishEvent(new SendMessageEvent(message));
-        log.info("Публикация события SendMessageEvent (HTML) с клавиатурой для чата {}", chatId);
+        executeMessage(message);
     }
 
 
@@ -201,8 +266,7 @@ public class MessageService {
         message.setChatId(chatId.toString());
         message.setText(textToSend);
         message.setParseMode("MarkdownV2");
-        eventPublisher.publishEvent(new SendMessageEvent(message));
-        log.info("Публикация события SendMessageEvent (MarkdownV2) для чата {}", chatId);
+        executeMessage(message);
     }
 
     public void sendMarkdownMessage(Long chatId, String textToSend, Integer replyToMessageId) {
@@ -211,143 +275,152 @@ public class MessageService {
         message.setText(textToSend);
         message.setReplyToMessageId(replyToMessageId);
         message.setParseMode("MarkdownV2");
-        eventPublisher.publishEvent(new SendMessageEvent(message));
-        log.info("Публикация события SendMessageEvent (MarkdownV2) с ответом на сообщение для чата {}", chatId);
+        executeMessage(message);
+    }
+
+    public CompletableFuture<List<ChatMember>> executeGetChatAdministratorsAsync(GetChatAdministrators getChatAdministrators) {
+        return apiClient.submit(getChatAdministrators).<List<ChatMember>>thenApply(administrators -> administrators).whenComplete((administrators, e) -> {
+            if (e != null) {
+                log.error("Ошибка при получении администраторов чата: {}", e.getMessage());
+            } else {
+                log.info("Администраторы чата {}: {}", getChatAdministrators.getChatId(), administrators.size());
+            }
+        });
     }
 
     public List<ChatMember> executeGetChatAdministrators(GetChatAdministrators getChatAdministrators) {
-        CompletableFuture<List<ChatMember>> future = new CompletableFuture<>();
-        eventPublisher.publishEvent(new GetChatAdministratorsEvent(getChatAdministrators, future));
         try {
-            return future.get();
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("Ошибка при получении администраторов чата: {}", e.getMessage());
+            return executeGetChatAdministratorsAsync(getChatAdministrators).join();
+        } catch (CompletionException | CancellationException e) {
             return null;
         }
     }
 
+    public CompletableFuture<ChatMember> executeGetChatMemberAsync(GetChatMember getChatMember) {
+        return apiClient.submit(getChatMember).whenComplete((chatMember, e) -> {
+            if (e != null) {
+                log.error("Ошибка при получении пользователя чата: {}", e.getMessage());
+            } else {
+                log.info("Получен пользователь {}", chatMember);
+            }
+        });
+    }
+
     public ChatMember executeGetChatMember(GetChatMember getChatMember) {
-        CompletableFuture<ChatMember> future = new CompletableFuture<>();
-        eventPublisher.publishEvent(new GetChatMemberEvent(getChatMember, future));
         try {
-            return future.get();
-        } catch (InterruptedException | ExecutionException e) {
-            log.error("Ошибка при получении пользователя чата: {}", e.getMessage());
+            return executeGetChatMemberAsync(getChatMember).join();
+        } catch (CompletionException | CancellationException e) {
             return null;
         }
     }
 
-    public void executeMessage(SendMessage message) {
-        eventPublisher.publishEvent(new SendMessageEvent(message));
-        log.info("Публикация события SendMessageEvent для executeMessage");
+    public CompletableFuture<Message> executeMessage(SendMessage message) {
+        return executeMessage(message, OutboundPriority.NORMAL);
     }
 
-    public Integer executeCaptchaMessage(SendMessage message) {
-        SendCaptchaMessageEvent sendCaptchaMessageEvent = new SendCaptchaMessageEvent(message);
-        eventPublisher.publishEvent(sendCaptchaMessageEvent);
-        log.info("Публикация события SendCaptchaMessageEvent для executeCaptchaMessage");
-        return sendCaptchaMessageEvent.getMessageId();
+    public CompletableFuture<Message> executeMessage(SendMessage message, OutboundPriority priority) {
+        return apiClient.submit(message, priority).whenComplete((sentMessage, e) -> {
+            if (e != null) {
+                log.error("Ошибка при отправке сообщения: {}", e.getMessage());
+            } else if (sentMessage != null) {
+                addMessage(sentMessage.getChatId(), sentMessage);
+                log.info("Сообщение отправлено в чат {}", message.getChatId());
+            }
+        });
     }
 
-    private String chooseRandomGifUrl() {
-        List<String> urls = List.of(
-                "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExdDg4NWoxZWJ6MGh0MXpkaGdrZHZqcGt3Y3JzZ2d3NnQzcDU0OWdsZyZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/NEHJpOX8vWHk9dzEjy/giphy.gif",
-                "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExcHo4MzV6c3U2Z2Vwd3U0Nm56NGhnNHVkc2Izb2F3OGo5NGlldXYyMSZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/5WUsLZLkZlMdO/giphy.gif",
-                "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExZnVvZnFsM3JwbnYwYjNpZGFpOGpjc2t3bW52c3NnMWZ0cm0wa2FxeCZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/jquDWJfPUMCiI/giphy.gif",
-                "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExMWExM3d6dDl4NXlnYmJoOWlieXU4NWE3dnYxejg3d2I0dnZtYmE1NyZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/Fkmgse8OMKn9C/giphy.gif",
-                "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExeHV0Zno0dnMycjk4c2Z0NzBuOXhmZzkzcXE5YjY0aTVldHljb25jMyZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/8nmLYpDYSTnOw/giphy.gif",
-                "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExYm55Z3V1dDQ2a3hyaHJqdXJsYXVzMzExNTFscGRkNHRiNWFqbHNjZCZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/l3q2K5jinAlChoCLS/giphy.gif",
-                "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExcmJiZXM2dnRyMnN3czdpaDVlMzl0c2Nma3ZnaHI3Z20wa2Nha2NsMSZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/JSueytO5O29yM/giphy.gif",
-                "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExZTRnNzFoM3Bvanhub3hweWo4anQ5b3RuNGYxM3ZybnlwZGZsc2gxYSZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/70orEIVDASzXW/giphy.gif",
-                "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExN3h0MTZ4OHp0OTUwdTUwdGRyeGJoNXlzNzltdzgxdWdoc3E5NXJ0NCZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/KeoW2fn76yv66qzpJw/giphy.gif",
-                "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExcDMwaHZzcjFyZmlqMmhxYXJpMzk2NDY5Z2Qyd3FubjNkazk1d2p3YSZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/A3V2IWHMlFD9x9NaPD/giphy.gif",
-                "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExNXcxanUweXNmaXl3bXliYWVnejJtcmNxNmlnbGpjdGVwOWRobmMyeiZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/Zhy0nWRKx6cKkTzxUF/giphy.gif",
-                "https://i.giphy.com/media/v1.Y2lkPTc5MGI3NjExZ3l4c2czejBhZ2wxZjd0MTZla3N5NW5kNXV2aXQzMjV4NTI4aTUzNCZlcD12MV9pbnRlcm5hbF9naWZfYnlfaWQmY3Q9Zw/5TwN4gQI35fbl5F0C6/giphy.gif"
-        );
-        Random random = new Random();
-        return urls.get(random.nextInt(urls.size()));
+    public CompletableFuture<Integer> executeCaptchaMessage(SendMessage message) {
+        return executeMessage(message).thenApply(Message::getMessageId);
     }
 
     public void sendRandomGif(Long chatId) {
-        String gifUrl = chooseRandomGifUrl();
+        if (!updateDispatcher.allowCosmeticReaction()) {
+            return;
+        }
+        String gifUrl = GIF_URLS[ThreadLocalRandom.current().nextInt(GIF_URLS.length)];
+        String fileId = gifFileIdCache.get(gifUrl);
         SendAnimation sendAnimation = new SendAnimation();
         sendAnimation.setChatId(String.valueOf(chatId));
-        sendAnimation.setAnimation(new org.telegram.telegrambots.meta.api.objects.InputFile(gifUrl));
+        sendAnimation.setAnimation(new InputFile(fileId != null ? fileId : gifUrl));
 
-        eventPublisher.publishEvent(new SendAnimationEvent(sendAnimation));
-        log.info("Публикация события SendAnimationEvent для чата {}", chatId);
+        apiClient.submit(sendAnimation, OutboundPriority.COSMETIC).whenComplete((sentMessage, e) -> {
+            if (e != null) {
+                log.error("Ошибка при отправке GIF: {}", e.getMessage());
+                if (fileId != null && isRejectedFileId(e)) {
+                    gifFileIdCache.evict(gifUrl);
+                }
+            } else if (sentMessage != null) {
+                addMessage(sentMessage.getChatId(), sentMessage);
+                if (fileId == null) {
+                    gifFileIdCache.put(gifUrl, animationFileId(sentMessage));
+                }
+                log.info("GIF отправлен в чат {}", chatId);
+            }
+        });
     }
 
-    public String fixMarkdownText(String text) {
-        // Экран символов, за исключением ссылок.
-        return text
-                .replace("_", "\\_")
-                .replace("*", "\\*")
-                .replace("~", "\\~")
-                .replace("`", "\\`")
-                .replace(">", "\\>")
-                .replace("#", "\\#")
-                .replace("+", "\\+")
-                .replace("-", "\\-")
-                .replace("=", "\\=")
-                .replace("|", "\\|")
-                .replace("{", "\\{")
-                .replace("}", "\\}")
-                .replace(".", "\\.")
-                .replace("!", "\\!");
+    // забываем file_id, только если Telegram отверг сам идентификатор; 429, сеть и сброс косметики из очереди его не касаются
+    private static boolean isRejectedFileId(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof TelegramApiRequestException requestException
+                && Integer.valueOf(400).equals(requestException.getErrorCode())
+                && requestException.getApiResponse() != null
+                && requestException.getApiResponse().toLowerCase(Locale.ROOT).contains("file");
     }
 
-    @Cacheable("keywordsCache")
-    protected List<String> getKeyWords() {
-        log.info("Взяли слова-триггеры из БД");
-        Iterable<KeyWord> keyWords = keyWordRepository.findAll();
-        return StreamSupport.stream(keyWords.spliterator(), false)
-                .map(KeyWord::getKeyWord)
-                .collect(Collectors.toList());
+    private static String animationFileId(Message sentMessage) {
+        if (sentMessage.getAnimation() != null) {
+            return sentMessage.getAnimation().getFileId();
+        }
+        return sentMessage.getDocument() != null ? sentMessage.getDocument().getFileId() : null;
     }
 
-    public Map<Long, List<Message>> getUserMessages() {
-        return userMessages;
+    public String fixMarkdownText(String text) {
+        // Экран символов, за исключением ссылок.
+        return MarkdownEscaper.escape(text);
     }
 
-    public void clearUserMessages() {
-        userMessages.clear();
+    public void addMessage(Long chatId, Message message) {
+        if (message.getMessageId() == null) {
+            return;
+        }
+        long senderId = message.getFrom() != null ? message.getFrom().getId() : 0L;
+        int date = message.getDate() != null ? message.getDate() : (int) Instant.now().getEpochSecond();
+        chatMessages.computeIfAbsent(chatId, id -> new MessageIdRing(messageRingCapacity))
+                .add(message.getMessageId(), date);
+        pendingUserMessages.append(chatId, senderId, message.getMessageId());
     }
 
-    public void addUserMessage(Long userId, Message message) {
-        userMessages.putIfAbsent(userId, new ArrayList<>());
-        userMessages.get(userId).add(message);
+    public void trackUserMessages(Long chatId, Long userId) {
+        pendingUserMessages.track(chatId, userId, System.currentTimeMillis());
     }
 
-    public void addMessage(Long chatId, Message message) {
-        chatMessages.putIfAbsent(chatId, new ArrayList<>());
-        chatMessages.get(chatId).add(message);
+    public int[] drainMessageIds(Long chatId) {
+        MessageIdRing ring = chatMessages.remove(chatId);
+        return ring == null ? new int[0] : ring.drain(deletableSince());
     }
 
-    public Map<Long, List<Message>> getAllMessages(Long chatId) {
-        return chatMessages.entrySet().stream()
-                .filter(entry -> entry.getKey().equals(chatId))
-                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    public void deleteUserMessages(Long chatId, Long userId) {
+        for (int messageId : pendingUserMessages.remove(chatId, userId)) {
+            executeDeleteMessage(new DeleteMessage(String.valueOf(chatId), messageId));
+        }
     }
 
-    public void clearAllMessages(Long chatId) {
-        chatMessages.remove(chatId);
+    @Scheduled(fixedRate = 3600000)
+    public void pruneMessageHistory() {
+        int notBefore = deletableSince();
+        chatMessages.entrySet().removeIf(entry -> entry.getValue().newestDate() < notBefore);
     }
 
-    public void deleteUserMessages(Long chatId, Long userId) {
-        for (Map.Entry<Long, List<Message>> entry : userMessages.entrySet()) {
-            if (entry.getKey().equals(userId)) {
-                List<Message> messages = entry.getValue();
-                for (Message message : messages) {
-                    DeleteMessage deleteMessage = new DeleteMessage();
-                    deleteMessage.setChatId(String.valueOf(chatId));
-                    deleteMessage.setMessageId(message.getMessageId());
-                    eventPublisher.publishEvent(new DeleteMessageEvent(deleteMessage));
-                    log.info("Публикация события DeleteMessageEvent для удаления сообщения ID {}", message.getMessageId());
-                }
-                clearUserMessages();
-                messages.clear();
-            }
+    @Scheduled(fixedRate = 60000)
+    public void evictPendingUserMessages() {
+        int evicted = pendingUserMessages.evictExpired(System.currentTimeMillis());
+        if (evicted > 0) {
+            log.info("Удалено {} устаревших записей сообщений новых участников", evicted);
         }
     }
-}
\ No newline at end of file
+
+    private int deletableSince() {
+        return (int) (Instant.now().getEpochSecond() - messageMaxAgeSeconds);
+    }
+}
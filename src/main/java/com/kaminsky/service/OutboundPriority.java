@@ -0,0 +1,7 @@
+package com.kaminsky.service;
+
+public enum OutboundPriority {
+    MODERATION,
+    NORMAL,
+    COSMETIC
+}
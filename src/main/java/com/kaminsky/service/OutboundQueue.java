@@ -0,0 +1,378 @@
+package com.kaminsky.service;
+
+import com.kaminsky.util.TokenBucket;
+import lombok.extern.slf4j.Slf4j;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Очередь исходящих запросов перед Bot API: общий лимит (~30/с), лимит на чат
+ * (~20/мин для групп, ~1/с для личных), обход чатов по кругу и повтор после 429 с учетом retry_after.
+ * Модерация всегда обслуживается раньше обычных сообщений, косметические сообщения
+ * отбрасываются первыми при переполнении.
+ */
+@Slf4j
+public class OutboundQueue {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long PRUNE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final OutboundPriority[] PRIORITIES = OutboundPriority.values();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Map<Long, ChatLane> lanes = new HashMap<>();
+    private final ArrayDeque<ChatLane>[] ready;
+    private final int[] pendingByPriority = new int[PRIORITIES.length];
+    private final TokenBucket globalBucket;
+    private final double groupPerMinute;
+    private final double privatePerSecond;
+    private final int capacity;
+    private final int cosmeticShedThreshold;
+    private final long cosmeticMaxAgeNanos;
+    private final long timeoutSeconds;
+    private final Executor executor;
+    private final Thread dispatcher;
+
+    private int pending;
+    private long shedCount;
+    private long lastPruneNanos;
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    public OutboundQueue(double globalPerSecond, double groupPerMinute, double privatePerSecond,
+                         int capacity, int cosmeticShedThreshold, long cosmeticMaxAgeSeconds,
+                         long timeoutSeconds, Executor executor) {
+        long now = System.nanoTime();
+        this.globalBucket = new TokenBucket(globalPerSecond, globalPerSecond, 1, TimeUnit.SECONDS, now);
+        this.groupPerMinute = groupPerMinute;
+        this.privatePerSecond = privatePerSecond;
+        this.capacity = capacity;
+        this.cosmeticShedThreshold = cosmeticShedThreshold;
+        this.cosmeticMaxAgeNanos = TimeUnit.SECONDS.toNanos(cosmeticMaxAgeSeconds);
+        this.timeoutSeconds = timeoutSeconds;
+        this.executor = executor;
+        this.lastPruneNanos = now;
+        this.ready = new ArrayDeque[PRIORITIES.length];
+        for (int i = 0; i < ready.length; i++) {
+            ready[i] = new ArrayDeque<>();
+        }
+        this.dispatcher = new Thread(this::runDispatcher, "outbound-queue");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    public <T> CompletableFuture<T> enqueue(long chatId, boolean countsAsMessage, OutboundPriority priority, ApiCall<T> call) {
+        OutboundRequest<T> request = new OutboundRequest<>(chatId, countsAsMessage, priority, call, System.nanoTime());
+        lock.lock();
+        try {
+            if (priority == OutboundPriority.COSMETIC && pending >= cosmeticShedThreshold) {
+                shed(request, "очередь перегружена");
+                return request.future;
+            }
+            if (pending >= capacity && (priority == OutboundPriority.COSMETIC || !evictCosmetic())) {
+                log.warn("Очередь исходящих запросов переполнена, запрос для чата {} отклонен", chatId);
+                request.future.completeExceptionally(new RejectedExecutionException("Очередь исходящих запросов переполнена"));
+                return request.future;
+            }
+            ChatLane lane = lanes.computeIfAbsent(chatId, this::newLane);
+            lane.requests[priority.ordinal()].addLast(request);
+            onAdded(request);
+            schedule(lane, priority);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        return request.future;
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getPendingCount(OutboundPriority priority) {
+        lock.lock();
+        try {
+            return pendingByPriority[priority.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getShedCount() {
+        lock.lock();
+        try {
+            return shedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+    }
+
+    private ChatLane newLane(long chatId) {
+        long now = System.nanoTime();
+        TokenBucket bucket = chatId < 0
+                ? new TokenBucket(groupPerMinute, groupPerMinute, 1, TimeUnit.MINUTES, now)
+                : new TokenBucket(privatePerSecond, privatePerSecond, 1, TimeUnit.SECONDS, now);
+        return new ChatLane(bucket);
+    }
+
+    private void schedule(ChatLane lane, OutboundPriority priority) {
+        int index = priority.ordinal();
+        if (!lane.scheduled[index]) {
+            lane.scheduled[index] = true;
+            ready[index].addLast(lane);
+        }
+    }
+
+    private void onAdded(OutboundRequest<?> request) {
+        pending++;
+        pendingByPriority[request.priority.ordinal()]++;
+    }
+
+    private void onRemoved(OutboundRequest<?> request) {
+        pending--;
+        pendingByPriority[request.priority.ordinal()]--;
+    }
+
+    private void shed(OutboundRequest<?> request, String reason) {
+        shedCount++;
+        log.info("Косметическое сообщение для чата {} отброшено: {}", request.chatId, reason);
+        request.future.completeExceptionally(new RejectedExecutionException("Сообщение отброшено: " + reason));
+    }
+
+    private boolean evictCosmetic() {
+        int cosmetic = OutboundPriority.COSMETIC.ordinal();
+        for (ChatLane lane : ready[cosmetic]) {
+            OutboundRequest<?> victim = lane.requests[cosmetic].pollLast();
+            if (victim != null) {
+                onRemoved(victim);
+                shed(victim, "освобождено место для более важного запроса");
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void runDispatcher() {
+        lock.lock();
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                pruneIdleLanes(now);
+
+                long waitNanos = globalBucket.nanosUntilAvailable(now);
+                OutboundRequest<?> next = null;
+                if (waitNanos == 0) {
+                    waitNanos = Long.MAX_VALUE;
+                    for (int p = 0; p < PRIORITIES.length && next == null; p++) {
+                        ArrayDeque<ChatLane> lanesWithWork = ready[p];
+                        for (int i = 0, size = lanesWithWork.size(); i < size && next == null; i++) {
+                            ChatLane lane = lanesWithWork.pollFirst();
+                            ArrayDeque<OutboundRequest<?>> requests = lane.requests[p];
+                            dropStaleCosmetic(requests, p, now);
+                            if (!requests.isEmpty()) {
+                                long laneWait = lane.nanosUntilReady(requests.peekFirst(), now);
+                                if (laneWait == 0) {
+                                    next = lane.take(p, now);
+                                    onRemoved(next);
+                                } else {
+                                    waitNanos = Math.min(waitNanos, laneWait);
+                                }
+                            }
+                            if (requests.isEmpty()) {
+                                lane.scheduled[p] = false;
+                            } else {
+                                lanesWithWork.addLast(lane);
+                            }
+                        }
+                    }
+                }
+
+                if (next != null) {
+                    globalBucket.tryConsume(now);
+                    lock.unlock();
+                    try {
+                        execute(next);
+                    } finally {
+                        lock.lock();
+                    }
+                } else if (pending == 0) {
+                    changed.await();
+                } else {
+                    changed.awaitNanos(waitNanos);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dropStaleCosmetic(ArrayDeque<OutboundRequest<?>> requests, int priority, long now) {
+        if (priority != OutboundPriority.COSMETIC.ordinal()) {
+            return;
+        }
+        OutboundRequest<?> head;
+        while ((head = requests.peekFirst()) != null && now - head.enqueuedAtNanos > cosmeticMaxAgeNanos) {
+            requests.pollFirst();
+            onRemoved(head);
+            shed(head, "устарело в очереди");
+        }
+    }
+
+    private void pruneIdleLanes(long now) {
+        if (now - lastPruneNanos < PRUNE_INTERVAL_NANOS) {
+            return;
+        }
+        lastPruneNanos = now;
+        Iterator<ChatLane> iterator = lanes.values().iterator();
+        while (iterator.hasNext()) {
+            ChatLane lane = iterator.next();
+            if (lane.isIdle(now)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private <T> void execute(OutboundRequest<T> request) {
+        if (request.future.isDone()) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                // таймаут считается от начала HTTP-вызова: ожидание в очереди и свободного потока в него не входит
+                CompletableFuture<Void> watchdog = new CompletableFuture<Void>().orTimeout(timeoutSeconds, TimeUnit.SECONDS);
+                watchdog.exceptionally(e -> {
+                    request.future.completeExceptionally(e);
+                    return null;
+                });
+                try {
+                    request.future.complete(request.call.execute());
+                } catch (TelegramApiRequestException e) {
+                    Integer retryAfter = retryAfterSeconds(e);
+                    if (retryAfter != null && request.attempts < MAX_ATTEMPTS) {
+                        retry(request, retryAfter);
+                    } else {
+                        request.future.completeExceptionally(e);
+                    }
+                } catch (TelegramApiException | RuntimeException e) {
+                    request.future.completeExceptionally(e);
+                } finally {
+                    watchdog.complete(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            request.future.completeExceptionally(e);
+        }
+    }
+
+    private void retry(OutboundRequest<?> request, int retryAfterSeconds) {
+        log.warn("Превышен лимит Telegram для чата {}, повтор через {} с", request.chatId, retryAfterSeconds);
+        lock.lock();
+        try {
+            ChatLane lane = lanes.computeIfAbsent(request.chatId, this::newLane);
+            lane.pausedUntilNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryAfterSeconds);
+            lane.requests[request.priority.ordinal()].addFirst(request);
+            onAdded(request);
+            schedule(lane, request.priority);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static Integer retryAfterSeconds(TelegramApiRequestException e) {
+        if (e.getErrorCode() != null && e.getErrorCode() == 429
+                && e.getParameters() != null && e.getParameters().getRetryAfter() != null) {
+            return e.getParameters().getRetryAfter();
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    public interface ApiCall<T> {
+        T execute() throws TelegramApiException;
+    }
+
+    private static final class OutboundRequest<T> {
+        private final long chatId;
+        private final boolean countsAsMessage;
+        private final OutboundPriority priority;
+        private final ApiCall<T> call;
+        private final long enqueuedAtNanos;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private int attempts;
+
+        private OutboundRequest(long chatId, boolean countsAsMessage, OutboundPriority priority,
+                                ApiCall<T> call, long enqueuedAtNanos) {
+            this.chatId = chatId;
+            this.countsAsMessage = countsAsMessage;
+            this.priority = priority;
+            this.call = call;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
+
+    private static final class ChatLane {
+        private final TokenBucket bucket;
+        private final ArrayDeque<OutboundRequest<?>>[] requests;
+        private final boolean[] scheduled = new boolean[PRIORITIES.length];
+        private long pausedUntilNanos;
+
+        @SuppressWarnings("unchecked")
+        private ChatLane(TokenBucket bucket) {
+            this.bucket = bucket;
+            this.pausedUntilNanos = System.nanoTime();
+            this.requests = new ArrayDeque[PRIORITIES.length];
+            for (int i = 0; i < requests.length; i++) {
+                requests[i] = new ArrayDeque<>();
+            }
+        }
+
+        private long nanosUntilReady(OutboundRequest<?> head, long now) {
+            if (pausedUntilNanos - now > 0) {
+                return pausedUntilNanos - now;
+            }
+            return head.countsAsMessage ? bucket.nanosUntilAvailable(now) : 0;
+        }
+
+        private OutboundRequest<?> take(int priority, long now) {
+            OutboundRequest<?> request = requests[priority].pollFirst();
+            if (request.countsAsMessage) {
+                bucket.tryConsume(now);
+            }
+            request.attempts++;
+            return request;
+        }
+
+        private boolean isIdle(long now) {
+            for (boolean laneScheduled : scheduled) {
+                if (laneScheduled) {
+                    return false;
+                }
+            }
+            return pausedUntilNanos - now <= 0 && bucket.isFull(now);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.kaminsky.service;
+
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.util.JoinRateWindow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Определяет массовый вход в чат по скользящему окну входов. Режим рейда держится,
+ * пока входы идут чаще порога, и снимается через окно после последнего всплеска.
+ */
+@Slf4j
+@Service
+public class RaidDetector {
+
+    private final Map<Long, ChatJoins> chats = new ConcurrentHashMap<>();
+    private final int joinThreshold;
+    private final long windowMillis;
+
+    @Autowired
+    public RaidDetector(BotConfig config) {
+        this.joinThreshold = config.getRaidJoinThreshold();
+        this.windowMillis = TimeUnit.SECONDS.toMillis(config.getRaidWindowSeconds());
+    }
+
+    /**
+     * Учитывает вход в чат и возвращает true, если чат сейчас в режиме рейда.
+     */
+    public boolean onJoin(Long chatId) {
+        long now = System.currentTimeMillis();
+        ChatJoins joins = chats.computeIfAbsent(chatId, id -> new ChatJoins(new JoinRateWindow(joinThreshold, windowMillis)));
+        if (joins.window.record(now)) {
+            if (now >= joins.raidUntilMillis) {
+                log.warn("Чат {} переведен в режим рейда: {} входов за {} с", chatId, joinThreshold,
+                        TimeUnit.MILLISECONDS.toSeconds(windowMillis));
+            }
+            joins.raidUntilMillis = now + windowMillis;
+        }
+        return now < joins.raidUntilMillis;
+    }
+
+    public boolean isRaid(Long chatId) {
+        ChatJoins joins = chats.get(chatId);
+        return joins != null && System.currentTimeMillis() < joins.raidUntilMillis;
+    }
+
+    @Scheduled(fixedRate = 600000)
+    public void evictIdleChats() {
+        long idleBefore = System.currentTimeMillis() - windowMillis;
+        chats.values().removeIf(joins -> joins.raidUntilMillis < idleBefore && joins.window.newestJoin() < idleBefore);
+    }
+
+    private static final class ChatJoins {
+        private final JoinRateWindow window;
+        private volatile long raidUntilMillis;
+
+        private ChatJoins(JoinRateWindow window) {
+            this.window = window;
+        }
+    }
+}
@@ -7,25 +7,18 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-
 @Slf4j
 @Service
 public class SchedulerService {
 
     private final BotMessageRepository botMessageRepository;
     private final MessageService messageService;
-    private final ScheduledExecutorService executorService = Executors.newScheduledThreadPool(5);
-    private final UserService userService;
 
     @Autowired
     public SchedulerService(BotMessageRepository botMessageRepository,
-                            MessageService messageService, UserService userService) {
+                            MessageService messageService) {
         this.botMessageRepository = botMessageRepository;
         this.messageService = messageService;
-        this.userService = userService;
     }
 
     @Scheduled(cron = "${cron.scheduler}")
@@ -41,23 +34,4 @@ public class SchedulerService {
             }
         }
     }
-
-    public void scheduleTask(Runnable task, long delay, TimeUnit unit) {
-        executorService.schedule(task, delay, unit);
-        log.info("Запланирована задача {} {}", delay, unit);
-    }
-
-    public void shutdownScheduler() {
-        if (!executorService.isShutdown() && executorService != null) {
-            executorService.shutdown();
-            log.info("Планировщик остановился");
-        }
-    }
-
-    public void startBannedUsersCleanupTask(long interval, TimeUnit timeUnit) {
-        executorService.scheduleAtFixedRate(() -> {
-            userService.clearBannedUsers();
-        }, interval, interval, timeUnit);
-        log.info("Внутренний список бота забаненных очищен");
-    }
     }
@@ -0,0 +1,166 @@
+package com.kaminsky.service;
+
+import com.kaminsky.config.BotConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.bots.DefaultAbsSender;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.ForwardMessage;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.BanChatMember;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.RestrictChatMember;
+import org.telegram.telegrambots.meta.api.methods.send.SendAnimation;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Исходящие вызовы Bot API. Каждый вызов выполняется на собственном пуле потоков
+ * и сразу возвращает future с таймаутом, поток обработки обновлений не ждет HTTP-ответа.
+ * Действия в чатах проходят через {@link OutboundQueue} с лимитами Telegram, запросы на чтение идут напрямую.
+ * Бан, ограничение и удаление по умолчанию идут с приоритетом модерации.
+ */
+@Slf4j
+@Service
+public class TelegramApiClient extends DefaultAbsSender {
+
+    private final ExecutorService executor;
+    private final OutboundQueue outboundQueue;
+    private final long timeoutSeconds;
+
+    @Autowired
+    public TelegramApiClient(BotConfig config) {
+        super(new DefaultBotOptions(), config.getToken());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, config.getOutboundThreads()), runnable -> {
+            Thread thread = new Thread(runnable, "telegram-api-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timeoutSeconds = config.getOutboundTimeoutSeconds();
+        this.outboundQueue = new OutboundQueue(
+                config.getOutboundGlobalPerSecond(),
+                config.getOutboundGroupPerMinute(),
+                config.getOutboundPrivatePerSecond(),
+                config.getOutboundQueueCapacity(),
+                config.getOutboundShedThreshold(),
+                config.getOutboundCosmeticMaxAgeSeconds(),
+                timeoutSeconds,
+                executor);
+    }
+
+    public <T extends Serializable, Method extends BotApiMethod<T>> CompletableFuture<T> submit(Method method) {
+        return submit(method, defaultPriority(method));
+    }
+
+    public <T extends Serializable, Method extends BotApiMethod<T>> CompletableFuture<T> submit(Method method, OutboundPriority priority) {
+        String chatId = targetChatId(method);
+        if (chatId == null) {
+            return submitDirect(() -> execute(method));
+        }
+        return outboundQueue.enqueue(parseChatId(chatId), countsAsMessage(method), priority, () -> execute(method));
+    }
+
+    public CompletableFuture<Message> submit(SendAnimation sendAnimation, OutboundPriority priority) {
+        return outboundQueue.enqueue(parseChatId(sendAnimation.getChatId()), true, priority, () -> execute(sendAnimation));
+    }
+
+    public int getPendingCount() {
+        return outboundQueue.getPendingCount();
+    }
+
+    public long getShedCount() {
+        return outboundQueue.getShedCount();
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void logOutboundQueue() {
+        int pending = outboundQueue.getPendingCount();
+        if (pending > 0) {
+            log.info("Исходящая очередь: модерация {}, обычные {}, косметика {}, отброшено всего {}",
+                    outboundQueue.getPendingCount(OutboundPriority.MODERATION),
+                    outboundQueue.getPendingCount(OutboundPriority.NORMAL),
+                    outboundQueue.getPendingCount(OutboundPriority.COSMETIC),
+                    outboundQueue.getShedCount());
+        }
+    }
+
+    private <T> CompletableFuture<T> submitDirect(OutboundQueue.ApiCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                // как и в очереди, таймаут идет с начала вызова, а не с ожидания свободного потока
+                future.orTimeout(timeoutSeconds, TimeUnit.SECONDS);
+                try {
+                    future.complete(call.execute());
+                } catch (TelegramApiException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private static String targetChatId(BotApiMethod<?> method) {
+        if (method instanceof SendMessage sendMessage) {
+            return sendMessage.getChatId();
+        }
+        if (method instanceof EditMessageText editMessageText) {
+            return editMessageText.getChatId();
+        }
+        if (method instanceof ForwardMessage forwardMessage) {
+            return forwardMessage.getChatId();
+        }
+        if (method instanceof DeleteMessage deleteMessage) {
+            return deleteMessage.getChatId();
+        }
+        if (method instanceof BanChatMember banChatMember) {
+            return banChatMember.getChatId();
+        }
+        if (method instanceof RestrictChatMember restrictChatMember) {
+            return restrictChatMember.getChatId();
+        }
+        return null;
+    }
+
+    private static OutboundPriority defaultPriority(BotApiMethod<?> method) {
+        if (method instanceof BanChatMember || method instanceof RestrictChatMember || method instanceof DeleteMessage) {
+            return OutboundPriority.MODERATION;
+        }
+        return OutboundPriority.NORMAL;
+    }
+
+    private static boolean countsAsMessage(BotApiMethod<?> method) {
+        return method instanceof SendMessage || method instanceof EditMessageText || method instanceof ForwardMessage;
+    }
+
+    private static long parseChatId(String chatId) {
+        try {
+            return Long.parseLong(chatId);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        outboundQueue.shutdown();
+        executor.shutdown();
+        log.info("Пул исходящих запросов остановлен");
+    }
+}
@@ -1,36 +1,20 @@
 package com.kaminsky.service;
 
 import com.kaminsky.config.BotConfig;
-import com.kaminsky.events.*;
 import com.kaminsky.model.ChatInfo;
-import com.kaminsky.model.repositories.ChatInfoRepository;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
-import org.telegram.telegrambots.meta.api.methods.ForwardMessage;
 import org.telegram.telegrambots.meta.api.methods.commands.SetMyCommands;
-import org.telegram.telegrambots.meta.api.methods.groupadministration.BanChatMember;
-import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatAdministrators;
-import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatMember;
-import org.telegram.telegrambots.meta.api.methods.groupadministration.RestrictChatMember;
-import org.telegram.telegrambots.meta.api.methods.send.SendAnimation;
-import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
-import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
-import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
 import org.telegram.telegrambots.meta.api.objects.*;
-import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMember;
 import org.telegram.telegrambots.meta.api.objects.commands.BotCommand;
 import org.telegram.telegrambots.meta.api.objects.commands.scope.BotCommandScopeAllChatAdministrators;
 import org.telegram.telegrambots.meta.api.objects.commands.scope.BotCommandScopeAllPrivateChats;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import java.util.*;
-import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
@@ -41,8 +25,12 @@ public class TelegramBot extends TelegramLongPollingBot {
     private final ChatAdminService chatAdminService;
     private final BotConfig config;
     private final CaptchaService captchaService;
-    private final ChatInfoRepository chatInfoRepository;
+    private final CachedDataService cachedDataService;
     private final UserService userService;
+    private final UpdateDispatcher updateDispatcher;
+    private final MemberStatusService memberStatusService;
+    private final UpdateBatchStats updateBatchStats;
+    private final UpdateDeduplicator updateDeduplicator;
 
     @Autowired
     public TelegramBot(BotConfig config,
@@ -50,18 +38,36 @@ public class TelegramBot extends TelegramLongPollingBot {
                        CallbackQueryHandler callbackQueryHandler,
                        ChatAdminService chatAdminService,
                        CaptchaService captchaService,
-                       ChatInfoRepository chatInfoRepository, UserService userService) {
+                       CachedDataService cachedDataService, UserService userService,
+                       UpdateDispatcher updateDispatcher,
+                       MemberStatusService memberStatusService,
+                       UpdateBatchStats updateBatchStats,
+                       UpdateDeduplicator updateDeduplicator) {
+        super(updatesOptions(config), config.getToken());
         this.config = config;
         this.commandHandler = commandHandler;
         this.callbackQueryHandler = callbackQueryHandler;
         this.chatAdminService = chatAdminService;
         this.captchaService = captchaService;
-        this.chatInfoRepository = chatInfoRepository;
+        this.cachedDataService = cachedDataService;
         this.userService = userService;
+        this.updateDispatcher = updateDispatcher;
+        this.memberStatusService = memberStatusService;
+        this.updateBatchStats = updateBatchStats;
+        this.updateDeduplicator = updateDeduplicator;
         initializeCommands();
 
     }
 
+    // Telegram присылает только нужные типы обновлений; chat_member без явного запроса не приходит вовсе
+    private static DefaultBotOptions updatesOptions(BotConfig config) {
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setAllowedUpdates(config.getAllowedUpdates());
+        options.setGetUpdatesLimit(config.getUpdatesLimit());
+        options.setGetUpdatesTimeout(config.getUpdatesTimeoutSeconds());
+        return options;
+    }
+
     @PostConstruct
     private void initializeCommands() {
         List<BotCommand> privateChatCommands = new ArrayList<>();
@@ -92,14 +98,56 @@ public class TelegramBot extends TelegramLongPollingBot {
         }
     }
 
+    @Override
+    public void onUpdatesReceived(List<Update> updates) {
+        updateBatchStats.recordBatch(updates.size(), System.currentTimeMillis());
+        for (Update update : updates) {
+            onUpdateReceived(update);
+        }
+    }
+
     @Override
     public void onUpdateReceived(Update update) {
+        if (updateDeduplicator.isDuplicate(update)) {
+            return;
+        }
+        if (!updateDispatcher.dispatch(resolveChatId(update), classify(update), eventTimeMillis(update), () -> processUpdate(update))) {
+            log.warn("Обновление {} отброшено: очередь переполнена или бот останавливается", update.getUpdateId());
+        }
+    }
+
+    // капча, вход и выход участников, команды и личные сообщения не отбрасываются никогда
+    private UpdateClass classify(Update update) {
+        if (!update.hasMessage()) {
+            return UpdateClass.CRITICAL;
+        }
+        Message message = update.getMessage();
+        boolean memberChange = message.getNewChatMembers() != null && !message.getNewChatMembers().isEmpty()
+                || message.getLeftChatMember() != null;
+        boolean command = message.hasText() && message.getText().startsWith("/");
+        if (memberChange || command || message.getChat().isUserChat()) {
+            return UpdateClass.CRITICAL;
+        }
+        return UpdateClass.NORMAL;
+    }
+
+    private long eventTimeMillis(Update update) {
+        Integer date = null;
+        if (update.hasMessage()) {
+            date = update.getMessage().getDate();
+        } else if (update.hasChatMember()) {
+            date = update.getChatMember().getDate();
+        }
+        // у callback-запроса нет своего времени, считаем только ожидание в очереди
+        return date != null ? date * 1000L : System.currentTimeMillis();
+    }
+
+    private void processUpdate(Update update) {
 
         if (update.hasMessage() && update.getMessage().getNewChatMembers() != null && !update.getMessage().getNewChatMembers().isEmpty()) {
             Long chatId = update.getMessage().getChatId();
             if (!isNewChatMemberSokrytBot(update)) {
                 captchaService.popupCaptcha(update, chatId);
-                userService.collectUserMessage(update.getMessage().getFrom().getId(), update.getMessage());
             }
         }
 
@@ -107,7 +155,7 @@ public class TelegramBot extends TelegramLongPollingBot {
             Message message = update.getMessage();
             Long chatId = update.getMessage().getChatId();
             userService.collectAllMessages(chatId, message);
-            if (message.getLeftChatMember() != null && !userService.getBannedUsers().contains(message.getLeftChatMember().getId())) {
+            if (message.getLeftChatMember() != null && !userService.isUserBanned(message.getLeftChatMember().getId())) {
                 commandHandler.sayFarewellToUser(message);
             }
             if (update.getMessage().getChat().isGroupChat() || update.getMessage().getChat().isSuperGroupChat()) {
@@ -119,6 +167,27 @@ public class TelegramBot extends TelegramLongPollingBot {
         if (update.hasCallbackQuery()) {
             callbackQueryHandler.handleCallbackQuery(update.getCallbackQuery());
         }
+
+        if (update.hasChatMember()) {
+            chatAdminService.onChatMemberUpdated(update.getChatMember());
+            memberStatusService.onChatMemberUpdated(update.getChatMember());
+        }
+    }
+
+    private Long resolveChatId(Update update) {
+        if (update.hasMessage()) {
+            return update.getMessage().getChatId();
+        }
+        if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null) {
+            return update.getCallbackQuery().getMessage().getChatId();
+        }
+        if (update.hasChatMember()) {
+            return update.getChatMember().getChat().getId();
+        }
+        if (update.hasMyChatMember()) {
+            return update.getMyChatMember().getChat().getId();
+        }
+        return 0L;
     }
 
     private boolean isNewChatMemberSokrytBot(Update update) {
@@ -131,27 +200,12 @@ public class TelegramBot extends TelegramLongPollingBot {
         return false;
     }
 
-    @Cacheable(value = "chatInfo", key = "#chatId")
-    protected Optional<ChatInfo> getChatInfoFromCache(Long chatId) {
-        return chatInfoRepository.findById(chatId);
-    }
-
-    @CachePut(value = "chatInfo", key = "#chatInfo.chatId")
-    protected ChatInfo updateChatInfoCache(ChatInfo chatInfo) {
-        return chatInfoRepository.save(chatInfo);
-    }
-
-    @CacheEvict(value = "chatInfo", key = "#chatId")
-    protected void clearChatInfoCache(Long chatId) {
-        log.info("Кэш объектов ChatInfo с chatId {} очищен", chatId);
-    }
-
     private void registerChatInfo(Update update) {
         if (update.getMessage().getChat().getTitle() != null) {
             Long chatId = update.getMessage().getChatId();
             String chatTitle = update.getMessage().getChat().getTitle();
 
-            Optional<ChatInfo> cachedChatInfo = getChatInfoFromCache(chatId);
+            Optional<ChatInfo> cachedChatInfo = cachedDataService.getChatInfo(chatId);
             boolean needUpdate = false;
 
             if (cachedChatInfo.isEmpty()) {
@@ -168,147 +222,13 @@ public class TelegramBot extends TelegramLongPollingBot {
                 ChatInfo chatInfo = new ChatInfo();
                 chatInfo.setChatTitle(chatTitle);
                 chatInfo.setChatId(chatId);
-                updateChatInfoCache(chatInfo);
+                cachedDataService.saveChatInfo(chatInfo);
                 log.info("Записали новый объект ChatInfo {} : {}", chatInfo.getChatId(), chatInfo.getChatTitle());
             }
         }
     }
 
 
-    @EventListener
-    public void handleSendMessageEvent(SendMessageEvent event) {
-        SendMessage message = event.getSendMessage();
-        try {
-            Message sentMessage = execute(message);
-            if (sentMessage != null) {
-                Long chatId = sentMessage.getChatId();
-                userService.collectAllMessages(chatId, sentMessage);
-                log.info("Сообщение отправлено в чат {}", message.getChatId());
-            }
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при отправке сообщения: {}", e.getMessage());
-        }
-    }
-
-
-    @EventListener
-    public void handleSendCaptchaMessageEvent(SendCaptchaMessageEvent event) {
-        SendMessage message = event.getSendMessage();
-        try {
-            Message sentMessage = execute(message);
-            if (sentMessage != null) {
-                Long chatId = sentMessage.getChatId();
-                userService.collectAllMessages(chatId, sentMessage);
-                log.info("Сообщение-каптча отправлено в чат {}", message.getChatId());
-            }
-            event.setMessageId(sentMessage.getMessageId());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при отправке сообщения-каптчи: {}", e.getMessage());
-        }
-    }
-
-    @EventListener
-    public void handleEditMessageTextEvent(EditMessageTextEvent event) {
-        EditMessageText editMessageText = event.getEditMessageText();
-        try {
-            Message sentMessage = (Message) execute(editMessageText);
-            if (sentMessage != null) {
-                Long chatId = sentMessage.getChatId();
-                userService.collectAllMessages(chatId, sentMessage);
-                log.info("Сообщение отредактировано в чате " + editMessageText.getChatId());
-            }
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при редактировании сообщения: " + e.getMessage());
-        }
-    }
-
-    @EventListener
-    public void handleBanChatMemberEvent(BanChatMemberEvent event) {
-        BanChatMember banChatMember = event.getBanChatMember();
-        try {
-            execute(banChatMember);
-            log.info("Пользователь забанен в чате " + banChatMember.getChatId());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при бане пользователя: " + e.getMessage());
-        }
-    }
-
-    @EventListener
-    public void handleRestrictChatMemberEvent(RestrictChatMemberEvent event) {
-        RestrictChatMember restrictChatMember = event.getRestrictChatMember();
-        try {
-            execute(restrictChatMember);
-            log.info("Пользователь обеззвучен в чате " + restrictChatMember.getChatId());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при обеззвучивании пользователя: " + e.getMessage());
-        }
-    }
-
-    @EventListener
-    public void handleDeleteMessageEvent(DeleteMessageEvent event) {
-        DeleteMessage deleteMessage = event.getDeleteMessage();
-        try {
-            execute(deleteMessage);
-            log.info("Сообщение ID " + deleteMessage.getMessageId() + " удалено из чата " + deleteMessage.getChatId());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при удалении сообщения: " + e.getMessage());
-        }
-    }
-
-    @EventListener
-    public void handleForwardMessageEvent(ForwardMessageEvent event) {
-        ForwardMessage forwardMessage = event.getForwardMessage();
-        try {
-            execute(forwardMessage);
-            log.info("Сообщение переслано в чат " + forwardMessage.getChatId());
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при пересылке сообщения: " + e.getMessage());
-        }
-    }
-
-    @EventListener
-    public void handleSendAnimationEvent(SendAnimationEvent event) {
-        SendAnimation sendAnimation = event.getSendAnimation();
-        try {
-            Message sentMessage = execute(sendAnimation);
-            if (sentMessage != null) {
-                Long chatId = sentMessage.getChatId();
-                userService.collectAllMessages(chatId, sentMessage);
-                log.info("GIF отправлен в чат " + sendAnimation.getChatId());
-            }
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при отправке GIF: " + e.getMessage());
-        }
-    }
-
-    @EventListener
-    public void handleGetChatAdministratorsEvent(GetChatAdministratorsEvent event) {
-        GetChatAdministrators getChatAdministrators = event.getGetChatAdministrators();
-        CompletableFuture<List<ChatMember>> future = event.getFuture();
-        try {
-            List<ChatMember> administrators = execute(getChatAdministrators);
-            log.info("Администраторы чата " + getChatAdministrators.getChatId() + ": " + administrators.size());
-            future.complete(administrators);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при получении администраторов чата: " + e.getMessage());
-            future.completeExceptionally(e);
-        }
-    }
-
-    @EventListener
-    public void handleGetChatMemberEvent(GetChatMemberEvent event) {
-        GetChatMember getChatMember = event.getGetChatMember();
-        CompletableFuture<ChatMember> future = event.getFuture();
-        try {
-            ChatMember chatMember = execute(getChatMember);
-            log.info("Получен пользователь {}", chatMember.toString());
-            future.complete(chatMember);
-        } catch (TelegramApiException e) {
-            log.error("Ошибка при получении пользователя: {}", e.getMessage());
-            future.completeExceptionally(e);
-        }
-    }
-
     @Override
     public String getBotUsername() {
         return config.getBotName();
@@ -0,0 +1,67 @@
+package com.kaminsky.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Статистика пачек getUpdates: размер пачки и интервал между пачками.
+ * Интервал - это время одного цикла опроса: под нагрузкой он близок ко времени ответа Telegram,
+ * в простое - к таймауту long polling.
+ */
+@Slf4j
+@Service
+public class UpdateBatchStats {
+
+    private long lastBatchAtMillis = -1;
+    private long batches;
+    private long updates;
+    private int maxBatchSize;
+    private long totalIntervalMillis;
+    private long maxIntervalMillis;
+
+    public synchronized void recordBatch(int size, long nowMillis) {
+        if (lastBatchAtMillis >= 0) {
+            long interval = Math.max(0, nowMillis - lastBatchAtMillis);
+            totalIntervalMillis += interval;
+            maxIntervalMillis = Math.max(maxIntervalMillis, interval);
+        }
+        lastBatchAtMillis = nowMillis;
+        batches++;
+        updates += size;
+        maxBatchSize = Math.max(maxBatchSize, size);
+    }
+
+    public synchronized Snapshot snapshotAndReset() {
+        Snapshot snapshot = new Snapshot(batches, updates, maxBatchSize, totalIntervalMillis, maxIntervalMillis);
+        batches = 0;
+        updates = 0;
+        maxBatchSize = 0;
+        totalIntervalMillis = 0;
+        maxIntervalMillis = 0;
+        return snapshot;
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void logStats() {
+        Snapshot snapshot = snapshotAndReset();
+        if (snapshot.batches() > 0) {
+            log.info("Опрос обновлений за минуту: пачек {}, обновлений {}, средняя пачка {}, максимальная {}, " +
+                            "цикл опроса в среднем {} мс, максимум {} мс",
+                    snapshot.batches(), snapshot.updates(), snapshot.averageBatchSize(), snapshot.maxBatchSize(),
+                    snapshot.averageIntervalMillis(), snapshot.maxIntervalMillis());
+        }
+    }
+
+    public record Snapshot(long batches, long updates, int maxBatchSize, long totalIntervalMillis, long maxIntervalMillis) {
+
+        public long averageBatchSize() {
+            return batches == 0 ? 0 : updates / batches;
+        }
+
+        // первая пачка после сброса тоже дает интервал, поэтому делим на число пачек
+        public long averageIntervalMillis() {
+            return batches == 0 ? 0 : totalIntervalMillis / batches;
+        }
+    }
+}
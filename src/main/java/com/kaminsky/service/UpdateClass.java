@@ -0,0 +1,10 @@
+package com.kaminsky.service;
+
+/**
+ * Класс обновления для входной очереди. CRITICAL ждет места в очереди и никогда не теряется,
+ * NORMAL при заполненной очереди ждет или отбрасывается в зависимости от настройки.
+ */
+public enum UpdateClass {
+    CRITICAL,
+    NORMAL
+}
@@ -0,0 +1,81 @@
+package com.kaminsky.service;
+
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.util.UpdateIdWindow;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Отсекает повторно доставленные обновления: после перезапуска Telegram присылает
+ * неподтвержденные обновления еще раз, вебхук повторяет доставку при ошибке.
+ * Локально хранится окно update_id и LRU id callback-запросов; при включенном Redis
+ * обновление дополнительно отмечается ключом с TTL, чтобы повтор отсекался и на другом экземпляре.
+ */
+@Slf4j
+@Service
+public class UpdateDeduplicator {
+
+    static final String UPDATE_KEY_PREFIX = "sokrytbot:update:";
+
+    private final UpdateIdWindow updateIds;
+    private final Map<String, Boolean> callbackIds;
+    private final StringRedisTemplate redisTemplate;
+    private final boolean redisEnabled;
+    private final Duration redisTtl;
+    private final AtomicLong duplicates = new AtomicLong();
+
+    @Autowired
+    public UpdateDeduplicator(BotConfig config, StringRedisTemplate redisTemplate) {
+        this.updateIds = new UpdateIdWindow(config.getDedupWindowSize());
+        int callbackCapacity = Math.max(1, config.getDedupCallbackIds());
+        this.callbackIds = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > callbackCapacity;
+            }
+        };
+        this.redisTemplate = redisTemplate;
+        this.redisEnabled = config.isDedupRedisEnabled();
+        this.redisTtl = Duration.ofSeconds(config.getDedupRedisTtlSeconds());
+    }
+
+    public boolean isDuplicate(Update update) {
+        boolean duplicate = !updateIds.markIfNew(update.getUpdateId())
+                || update.hasCallbackQuery() && !markCallbackIfNew(update.getCallbackQuery().getId())
+                || redisEnabled && !markInRedisIfNew(update.getUpdateId());
+        if (duplicate) {
+            duplicates.incrementAndGet();
+            log.info("Повторное обновление {} пропущено", update.getUpdateId());
+        }
+        return duplicate;
+    }
+
+    public long getDuplicateCount() {
+        return duplicates.get();
+    }
+
+    private boolean markCallbackIfNew(String callbackId) {
+        synchronized (callbackIds) {
+            return callbackIds.put(callbackId, Boolean.TRUE) == null;
+        }
+    }
+
+    // при недоступном Redis обновление обрабатывается: пропустить его хуже, чем обработать дважды
+    private boolean markInRedisIfNew(Integer updateId) {
+        try {
+            Boolean added = redisTemplate.opsForValue().setIfAbsent(UPDATE_KEY_PREFIX + updateId, "1", redisTtl);
+            return !Boolean.FALSE.equals(added);
+        } catch (RuntimeException e) {
+            log.error("Не удалось отметить обновление {} в Redis: {}", updateId, e.getMessage());
+            return true;
+        }
+    }
+}
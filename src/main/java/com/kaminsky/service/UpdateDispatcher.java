@@ -0,0 +1,257 @@
+package com.kaminsky.service;
+
+import com.kaminsky.config.BotConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Раскладывает обновления по фиксированному набору потоков по id чата:
+ * обновления одного чата обрабатываются строго по порядку, разные чаты - параллельно.
+ * Очереди ограничены: критичные обновления ждут места, обычные при включенной настройке отбрасываются.
+ * Когда очередь потока длиннее порога или обновление слишком долго ждало, косметические реакции
+ * (ответ на упоминание, гифки) пропускаются, а модерация выполняется как обычно.
+ * При остановке новые обновления не принимаются, а уже принятые дорабатываются: их offset
+ * Telegram уже подтвержден, и повторно они не придут.
+ */
+@Slf4j
+@Service
+public class UpdateDispatcher {
+
+    // сигнал потоку полосы, что очередь разобрана и пора завершаться
+    private static final QueuedUpdate STOP = new QueuedUpdate(() -> { }, 0L);
+
+    private final Stripe[] stripes;
+    private final long shutdownAwaitMillis;
+    private volatile boolean accepting = true;
+    private final boolean dropNormalWhenFull;
+    private final int shedThreshold;
+    private final long cosmeticMaxLagMillis;
+    private final ThreadLocal<Boolean> sheddingCosmetic = new ThreadLocal<>();
+
+    private final AtomicLong droppedNormal = new AtomicLong();
+    private final AtomicLong shedCosmetic = new AtomicLong();
+    private final AtomicLong lastLagMillis = new AtomicLong();
+    private final AtomicLong maxLagMillis = new AtomicLong();
+
+    @Autowired
+    public UpdateDispatcher(BotConfig config) {
+        int stripeCount = Math.max(1, config.getDispatcherStripes());
+        int queueCapacity = Math.max(1, config.getDispatcherQueueCapacity());
+        this.dropNormalWhenFull = config.isIngestionDropNormalWhenFull();
+        this.shedThreshold = config.getIngestionShedThreshold() > 0 ? config.getIngestionShedThreshold() : queueCapacity;
+        this.cosmeticMaxLagMillis = config.getIngestionCosmeticMaxLagSeconds() > 0
+                ? config.getIngestionCosmeticMaxLagSeconds() * 1000 : Long.MAX_VALUE;
+        this.shutdownAwaitMillis = TimeUnit.SECONDS.toMillis(config.getDispatcherShutdownAwaitSeconds());
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(i, queueCapacity);
+        }
+        log.info("Диспетчер обновлений запущен: {} потоков, очередь {}", stripeCount, queueCapacity);
+    }
+
+    /**
+     * @param eventTimeMillis время события по данным Telegram, от него считается задержка обработки
+     * @return false, если обновление отброшено из-за заполненной очереди или остановки
+     */
+    public boolean dispatch(Long chatId, UpdateClass updateClass, long eventTimeMillis, Runnable task) {
+        if (!accepting) {
+            return false;
+        }
+        Stripe stripe = stripes[stripeIndex(chatId)];
+        QueuedUpdate queued = new QueuedUpdate(task, eventTimeMillis);
+        if (updateClass == UpdateClass.NORMAL && dropNormalWhenFull) {
+            if (!stripe.queue.offer(queued)) {
+                droppedNormal.incrementAndGet();
+                return false;
+            }
+            stripe.updateHighWatermark();
+            return true;
+        }
+        try {
+            // put, а не отказ: поток приема притормозит, но порядок внутри чата сохранится
+            stripe.queue.put(queued);
+            stripe.updateHighWatermark();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.error("Прервано ожидание места в очереди для чата {}", chatId);
+            return false;
+        }
+    }
+
+    /**
+     * Можно ли сейчас отправить косметическую реакцию на обрабатываемое обновление.
+     * Вне потоков диспетчера всегда true.
+     */
+    public boolean allowCosmeticReaction() {
+        if (Boolean.TRUE.equals(sheddingCosmetic.get())) {
+            shedCosmetic.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public int stripeIndex(Long chatId) {
+        long key = chatId == null ? 0L : chatId;
+        int hash = Long.hashCode(key * 0x9E3779B97F4A7C15L);
+        return Math.floorMod(hash ^ (hash >>> 16), stripes.length);
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    public int[] getQueueDepths() {
+        int[] depths = new int[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            depths[i] = stripes[i].queue.size();
+        }
+        return depths;
+    }
+
+    public int getQueueDepth(int stripeIndex) {
+        return stripes[stripeIndex].queue.size();
+    }
+
+    public long getProcessedCount(int stripeIndex) {
+        return stripes[stripeIndex].processed.get();
+    }
+
+    public long getDroppedNormalCount() {
+        return droppedNormal.get();
+    }
+
+    public long getShedCosmeticCount() {
+        return shedCosmetic.get();
+    }
+
+    public long getLastLagMillis() {
+        return lastLagMillis.get();
+    }
+
+    public long getMaxLagMillis() {
+        return maxLagMillis.get();
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void logQueueDepths() {
+        for (Stripe stripe : stripes) {
+            int highWatermark = stripe.highWatermark.getAndSet(0);
+            if (highWatermark > 0) {
+                log.info("Очередь обновлений {}: сейчас {}, максимум за минуту {}, обработано {}",
+                        stripe.index, stripe.queue.size(), highWatermark, stripe.processed.get());
+            }
+        }
+        long maxLag = maxLagMillis.getAndSet(0);
+        if (maxLag > 0 || droppedNormal.get() > 0 || shedCosmetic.get() > 0) {
+            log.info("Задержка обработки: последняя {} мс, максимум за минуту {} мс; отброшено обновлений {}, пропущено реакций {}",
+                    lastLagMillis.get(), maxLag, droppedNormal.get(), shedCosmetic.get());
+        }
+    }
+
+    @EventListener(ContextClosedEvent.class)
+    public void onContextClosed() {
+        // раньше уничтожения бинов: принятые обновления еще могут отправлять запросы в Telegram
+        shutdown();
+    }
+
+    /**
+     * Перестает принимать обновления, ждет до bot.dispatcher.shutdown-await-seconds,
+     * пока полосы разберут свои очереди, и только потом прерывает потоки.
+     */
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (!accepting) {
+            return;
+        }
+        accepting = false;
+        long deadline = System.currentTimeMillis() + shutdownAwaitMillis;
+        try {
+            for (Stripe stripe : stripes) {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                if (stripe.queue.offer(STOP, remaining, TimeUnit.MILLISECONDS)) {
+                    stripe.worker.join(Math.max(1, deadline - System.currentTimeMillis()));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int lost = 0;
+        for (Stripe stripe : stripes) {
+            stripe.worker.interrupt();
+            lost += stripe.queue.size() - (stripe.queue.contains(STOP) ? 1 : 0);
+        }
+        if (lost > 0) {
+            log.warn("Диспетчер обновлений остановлен, не обработано обновлений: {}", lost);
+        } else {
+            log.info("Диспетчер обновлений остановлен, очереди разобраны");
+        }
+    }
+
+    private void recordLag(long lagMillis) {
+        lastLagMillis.set(lagMillis);
+        maxLagMillis.accumulateAndGet(lagMillis, Math::max);
+    }
+
+    private record QueuedUpdate(Runnable task, long eventTimeMillis) {
+    }
+
+    private final class Stripe implements Runnable {
+        private final int index;
+        private final BlockingQueue<QueuedUpdate> queue;
+        private final Thread worker;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicInteger highWatermark = new AtomicInteger();
+
+        private Stripe(int index, int queueCapacity) {
+            this.index = index;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.worker = new Thread(this, "update-dispatcher-" + index);
+            this.worker.setDaemon(true);
+            this.worker.start();
+        }
+
+        private void updateHighWatermark() {
+            int depth = queue.size();
+            highWatermark.accumulateAndGet(depth, Math::max);
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                QueuedUpdate queued;
+                try {
+                    queued = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (queued == STOP) {
+                    break;
+                }
+                long lag = Math.max(0, System.currentTimeMillis() - queued.eventTimeMillis());
+                recordLag(lag);
+                sheddingCosmetic.set(lag > cosmeticMaxLagMillis || queue.size() >= shedThreshold);
+                try {
+                    queued.task().run();
+                } catch (Exception e) {
+                    log.error("Ошибка при обработке обновления: {}", e.getMessage(), e);
+                } finally {
+                    sheddingCosmetic.remove();
+                    processed.incrementAndGet();
+                }
+            }
+        }
+    }
+}
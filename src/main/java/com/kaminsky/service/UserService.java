@@ -5,18 +5,20 @@ import com.kaminsky.model.BotMessage;
 import com.kaminsky.model.User;
 import com.kaminsky.model.repositories.BotMessageRepository;
 import com.kaminsky.model.repositories.UserRepository;
+import com.kaminsky.util.ExpiringIdSet;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.telegram.telegrambots.meta.api.methods.ForwardMessage;
 import org.telegram.telegrambots.meta.api.objects.Message;
 
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
@@ -26,29 +28,23 @@ public class UserService {
     private final MessageService messageService;
     private final BotMessageRepository botMessageRepository;
     private final BotConfig botConfig;
+    private final CachedDataService cachedDataService;
 
-    private boolean isCommandHandled = false;
-    private boolean isAwaitingUnbanPetition = false;
-    private boolean isAwaitingWelcomeText = false;
-    private boolean isAwaitingRecurrentText = false;
-    private boolean isAwaitingKeyWords = false;
-
-    private final Set<Long> bannedUsers = Collections.synchronizedSet(new HashSet<>());
-    private final Map<Long, Boolean> userCaptchaStatus = new ConcurrentHashMap<>();
-
-    private Long currentChatIdForWelcomeText = null;
-    private Long currentChatIdForRecurrentText = null;
-
+    // забаненные ботом недавно: их выход из чата не считается обычным уходом
+    private final ExpiringIdSet bannedUsers;
 
     @Autowired
     public UserService(UserRepository userRepository,
                        MessageService messageService,
                        BotMessageRepository botMessageRepository,
-                       BotConfig botConfig) {
+                       BotConfig botConfig,
+                       CachedDataService cachedDataService) {
         this.userRepository = userRepository;
         this.messageService = messageService;
         this.botMessageRepository = botMessageRepository;
         this.botConfig = botConfig;
+        this.cachedDataService = cachedDataService;
+        this.bannedUsers = new ExpiringIdSet(TimeUnit.SECONDS.toMillis(botConfig.getBannedUsersTtlSeconds()));
     }
 
     @Cacheable(value = "users", key = "#chatId")
@@ -79,6 +75,7 @@ public class UserService {
             botMessage.setChatId(chatId);
             botMessage.setWelcomeMessage(welcomeText);
             botMessageRepository.save(botMessage);
+            cachedDataService.evictBotMessage(chatId);
     }
 
     public void saveRecurrentText(Long chatId, String recurrentText) {
@@ -86,6 +83,7 @@ public class UserService {
             botMessage.setChatId(chatId);
             botMessage.setRecurrentMessage(recurrentText);
             botMessageRepository.save(botMessage);
+            cachedDataService.evictBotMessage(chatId);
     }
 
     public void forwardUnbanPetition(Long chatId, Message message) {
@@ -96,93 +94,24 @@ public class UserService {
         messageService.executeForwardMessage(forwardMessage);
     }
 
-    public void collectUserMessage(Long chatId, Message message) {
-        messageService.addUserMessage(chatId, message);
-    }
-
     public void collectAllMessages(Long chatId, Message message) {
         messageService.addMessage(chatId, message);
     }
 
-    public void setUserCaptchaStatus(Long chatId, Boolean isPassedCaptcha) {
-        userCaptchaStatus.put(chatId, isPassedCaptcha);
-    }
-
-    public Boolean getUserCaptchaStatus(Long chatId) {
-        return userCaptchaStatus.get(chatId);
-    }
-
-    public Long getCurrentChatIdForRecurrentText() {
-        return currentChatIdForRecurrentText;
-    }
-
-    public void setCurrentChatIdForRecurrentText(Long currentChatIdForRecurrentText) {
-        this.currentChatIdForRecurrentText = currentChatIdForRecurrentText;
-    }
-
-    public Long getCurrentChatIdForWelcomeText() {
-        return currentChatIdForWelcomeText;
-    }
-
-    public void setCurrentChatIdForWelcomeText(Long currentChatIdForWelcomeText) {
-        this.currentChatIdForWelcomeText = currentChatIdForWelcomeText;
-    }
-
     public void addBannedUser(Long userId) {
-        bannedUsers.add(userId);
-    }
-
-    public Set<Long> getBannedUsers() {
-        return bannedUsers;
+        bannedUsers.add(userId, System.currentTimeMillis());
     }
 
     public boolean isUserBanned(Long userId) {
-        return bannedUsers.contains(userId);
-    }
-
-    public void clearBannedUsers() {
-        bannedUsers.clear();
-        log.info("Список забаненных пользователей очищен");
-    }
-
-    public boolean isAwaitingRecurrentText() {
-        return isAwaitingRecurrentText;
-    }
-
-    public void setAwaitingRecurrentText(boolean awaitingRecurrentText) {
-        isAwaitingRecurrentText = awaitingRecurrentText;
-    }
-
-    public boolean isAwaitingKeyWords() {
-        return isAwaitingKeyWords;
-    }
-
-    public void setAwaitingKeyWords(boolean awaitingKeyWords) {
-        isAwaitingKeyWords = awaitingKeyWords;
-    }
-
-    public boolean isAwaitingWelcomeText() {
-        return isAwaitingWelcomeText;
-    }
-
-    public void setAwaitingWelcomeText(boolean awaitingWelcomeText) {
-        isAwaitingWelcomeText = awaitingWelcomeText;
-    }
-
-    public boolean isAwaitingUnbanPetition() {
-        return isAwaitingUnbanPetition;
+        return bannedUsers.contains(userId, System.currentTimeMillis());
     }
 
-    public void setAwaitingUnbanPetition(boolean awaitingUnbanPeition) {
-        isAwaitingUnbanPetition = awaitingUnbanPeition;
-    }
-
-    public boolean isCommandHandled() {
-        return isCommandHandled;
-    }
-
-    public void setCommandHandled(boolean commandHandled) {
-        isCommandHandled = commandHandled;
+    @Scheduled(fixedRate = 60000)
+    public void evictExpiredBannedUsers() {
+        int evicted = bannedUsers.evictExpired(System.currentTimeMillis());
+        if (evicted > 0) {
+            log.info("Из списка забаненных удалено {} записей с истекшим сроком", evicted);
+        }
     }
 
 }
@@ -0,0 +1,204 @@
+package com.kaminsky.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kaminsky.config.BotConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Прием обновлений через вебхук. Запрос проверяется по секретному токену, тело кладется
+ * в ограниченную очередь и Telegram сразу получает 200; разбор и обработка идут в отдельном потоке.
+ * Если очередь заполнена, отвечаем 503 и Telegram повторит доставку позже.
+ * TLS предполагается на обратном прокси перед ботом.
+ */
+@Slf4j
+@Service
+public class WebhookReceiver {
+
+    static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+    private static final int MAX_BODY_BYTES = 1 << 20;
+    private static final int HTTP_THREADS = 4;
+
+    private final BotConfig config;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final BlockingQueue<byte[]> acceptQueue;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong unauthorized = new AtomicLong();
+
+    private volatile HttpServer server;
+    private volatile ExecutorService httpExecutor;
+    private volatile Thread worker;
+    private volatile Consumer<Update> updateHandler;
+
+    @Autowired
+    public WebhookReceiver(BotConfig config) {
+        this.config = config;
+        this.acceptQueue = new ArrayBlockingQueue<>(Math.max(1, config.getWebhookQueueCapacity()));
+    }
+
+    public synchronized void start(Consumer<Update> updateHandler) throws IOException {
+        if (server != null) {
+            return;
+        }
+        String secretToken = config.getWebhookSecretToken();
+        if (secretToken == null || secretToken.isBlank()) {
+            throw new IllegalStateException("Для вебхука нужен секретный токен bot.webhook.secret-token");
+        }
+        this.updateHandler = updateHandler;
+
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(config.getWebhookPort()), 0);
+        httpServer.createContext(config.getWebhookPath(), this::handleExchange);
+        httpExecutor = Executors.newFixedThreadPool(HTTP_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "webhook-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.setExecutor(httpExecutor);
+        httpServer.start();
+        server = httpServer;
+
+        worker = new Thread(this::drainQueue, "webhook-worker");
+        worker.setDaemon(true);
+        worker.start();
+        log.info("Вебхук слушает порт {} путь {}", getPort(), config.getWebhookPath());
+    }
+
+    public int getPort() {
+        HttpServer current = server;
+        return current == null ? -1 : current.getAddress().getPort();
+    }
+
+    public int getQueueDepth() {
+        return acceptQueue.size();
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getUnauthorizedCount() {
+        return unauthorized.get();
+    }
+
+    private void handleExchange(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            if (!config.getWebhookPath().equals(exchange.getRequestURI().getPath())) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            if (!isSecretValid(exchange.getRequestHeaders().getFirst(SECRET_HEADER))) {
+                unauthorized.incrementAndGet();
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+            byte[] body = readBody(exchange.getRequestBody());
+            if (body == null) {
+                exchange.sendResponseHeaders(413, -1);
+                return;
+            }
+            if (!acceptQueue.offer(body)) {
+                rejected.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            accepted.incrementAndGet();
+            exchange.sendResponseHeaders(200, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean isSecretValid(String received) {
+        if (received == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(
+                config.getWebhookSecretToken().getBytes(StandardCharsets.UTF_8),
+                received.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+        return body.length > MAX_BODY_BYTES ? null : body;
+    }
+
+    private void drainQueue() {
+        while (!Thread.currentThread().isInterrupted()) {
+            byte[] body;
+            try {
+                body = acceptQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            Update update;
+            try {
+                update = objectMapper.readValue(body, Update.class);
+            } catch (IOException e) {
+                log.error("Не удалось разобрать обновление из вебхука: {}", e.getMessage());
+                continue;
+            }
+            try {
+                updateHandler.accept(update);
+            } catch (Exception e) {
+                log.error("Ошибка при передаче обновления {}: {}", update.getUpdateId(), e.getMessage(), e);
+            }
+        }
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void logStats() {
+        if (server != null) {
+            log.info("Вебхук: принято {}, отклонено из-за очереди {}, без токена {}, в очереди {}",
+                    accepted.get(), rejected.get(), unauthorized.get(), acceptQueue.size());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(1);
+        httpExecutor.shutdown();
+        try {
+            httpExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        worker.interrupt();
+        server = null;
+        log.info("Вебхук остановлен");
+    }
+}
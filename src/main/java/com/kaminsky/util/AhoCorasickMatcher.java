@@ -0,0 +1,168 @@
+package com.kaminsky.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Автомат Ахо-Корасик для поиска любого из набора слов за один проход по тексту.
+ * Регистр не учитывается. Собирается один раз, после сборки неизменяем и потокобезопасен,
+ * при поиске ничего не аллоцирует.
+ */
+public final class AhoCorasickMatcher {
+
+    private static final long EMPTY = -1L;
+
+    private final String[] keyWords;
+    // переходы хранятся в одной хеш-таблице с открытой адресацией: (состояние, символ) -> состояние
+    private final long[] edgeKeys;
+    private final int[] edgeTargets;
+    private final int edgeMask;
+    private final int[] fail;
+    // индекс слова, заканчивающегося в этом состоянии (в том числе через суффиксные ссылки), или -1
+    private final int[] match;
+
+    private AhoCorasickMatcher(String[] keyWords, long[] edgeKeys, int[] edgeTargets, int[] fail, int[] match) {
+        this.keyWords = keyWords;
+        this.edgeKeys = edgeKeys;
+        this.edgeTargets = edgeTargets;
+        this.edgeMask = edgeKeys.length - 1;
+        this.fail = fail;
+        this.match = match;
+    }
+
+    public static AhoCorasickMatcher compile(Collection<String> words) {
+        List<String> keyWords = new ArrayList<>();
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> terminal = new ArrayList<>();
+        trie.add(new HashMap<>());
+        terminal.add(-1);
+
+        for (String word : words) {
+            if (word == null || word.isBlank()) {
+                continue;
+            }
+            int state = 0;
+            for (int i = 0; i < word.length(); i++) {
+                char c = Character.toLowerCase(word.charAt(i));
+                Integer next = trie.get(state).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new HashMap<>());
+                    terminal.add(-1);
+                    trie.get(state).put(c, next);
+                }
+                state = next;
+            }
+            if (terminal.get(state) == -1) {
+                terminal.set(state, keyWords.size());
+                keyWords.add(word);
+            }
+        }
+
+        int stateCount = trie.size();
+        int edgeCount = stateCount - 1;
+        int tableSize = Integer.highestOneBit(Math.max(2, edgeCount * 2 - 1)) << 1;
+        long[] edgeKeys = new long[tableSize];
+        int[] edgeTargets = new int[tableSize];
+        Arrays.fill(edgeKeys, EMPTY);
+        for (int state = 0; state < stateCount; state++) {
+            for (Map.Entry<Character, Integer> edge : trie.get(state).entrySet()) {
+                long key = edgeKey(state, edge.getKey());
+                int slot = slot(key, tableSize - 1);
+                while (edgeKeys[slot] != EMPTY) {
+                    slot = (slot + 1) & (tableSize - 1);
+                }
+                edgeKeys[slot] = key;
+                edgeTargets[slot] = edge.getValue();
+            }
+        }
+
+        int[] fail = new int[stateCount];
+        int[] match = new int[stateCount];
+        for (int state = 0; state < stateCount; state++) {
+            match[state] = terminal.get(state);
+        }
+        AhoCorasickMatcher matcher = new AhoCorasickMatcher(
+                keyWords.toArray(new String[0]), edgeKeys, edgeTargets, fail, match);
+
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : trie.get(0).values()) {
+            fail[child] = 0;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : trie.get(state).entrySet()) {
+                int child = edge.getValue();
+                int fallback = fail[state];
+                int target;
+                while ((target = matcher.edge(fallback, edge.getKey())) < 0 && fallback != 0) {
+                    fallback = fail[fallback];
+                }
+                fail[child] = target >= 0 ? target : 0;
+                if (match[child] == -1) {
+                    match[child] = match[fail[child]];
+                }
+                queue.add(child);
+            }
+        }
+        return matcher;
+    }
+
+    /**
+     * Возвращает первое найденное в тексте слово или null.
+     */
+    public String findFirst(CharSequence text) {
+        if (keyWords.length == 0 || text == null) {
+            return null;
+        }
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next;
+            while ((next = edge(state, c)) < 0 && state != 0) {
+                state = fail[state];
+            }
+            state = next >= 0 ? next : 0;
+            if (match[state] >= 0) {
+                return keyWords[match[state]];
+            }
+        }
+        return null;
+    }
+
+    public boolean matches(CharSequence text) {
+        return findFirst(text) != null;
+    }
+
+    public int size() {
+        return keyWords.length;
+    }
+
+    private int edge(int state, char c) {
+        long key = edgeKey(state, c);
+        int slot = slot(key, edgeMask);
+        long current;
+        while ((current = edgeKeys[slot]) != EMPTY) {
+            if (current == key) {
+                return edgeTargets[slot];
+            }
+            slot = (slot + 1) & edgeMask;
+        }
+        return -1;
+    }
+
+    private static long edgeKey(int state, char c) {
+        return ((long) state << 16) | c;
+    }
+
+    private static int slot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,44 @@
+package com.kaminsky.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Множество id, где у каждой записи свой срок жизни. Просроченные записи не видны сразу,
+ * а физически удаляются при обращении или в {@link #evictExpired(long)}.
+ */
+public class ExpiringIdSet {
+
+    private final Map<Long, Long> expiresAtMillis = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+
+    public ExpiringIdSet(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public void add(long id, long nowMillis) {
+        expiresAtMillis.put(id, nowMillis + ttlMillis);
+    }
+
+    public boolean contains(long id, long nowMillis) {
+        Long expiresAt = expiresAtMillis.get(id);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt <= nowMillis) {
+            expiresAtMillis.remove(id, expiresAt);
+            return false;
+        }
+        return true;
+    }
+
+    public int evictExpired(long nowMillis) {
+        int before = expiresAtMillis.size();
+        expiresAtMillis.values().removeIf(expiresAt -> expiresAt <= nowMillis);
+        return before - expiresAtMillis.size();
+    }
+
+    public int size() {
+        return expiresAtMillis.size();
+    }
+}
@@ -0,0 +1,38 @@
+package com.kaminsky.util;
+
+/**
+ * Скользящее окно входов в чат: хранит время последних threshold входов в кольцевом буфере
+ * и за O(1) отвечает, уложились ли они в окно.
+ */
+public class JoinRateWindow {
+
+    private final long[] joinTimes;
+    private final long windowMillis;
+    private int next;
+    private int count;
+
+    public JoinRateWindow(int threshold, long windowMillis) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Порог входов должен быть положительным");
+        }
+        this.joinTimes = new long[threshold];
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Учитывает вход и возвращает true, если последние threshold входов пришлись на одно окно.
+     */
+    public synchronized boolean record(long nowMillis) {
+        joinTimes[next] = nowMillis;
+        next = (next + 1) % joinTimes.length;
+        if (count < joinTimes.length) {
+            count++;
+        }
+        // после сдвига next указывает на самый старый из последних threshold входов
+        return count == joinTimes.length && nowMillis - joinTimes[next] < windowMillis;
+    }
+
+    public synchronized long newestJoin() {
+        return count == 0 ? 0 : joinTimes[(next - 1 + joinTimes.length) % joinTimes.length];
+    }
+}
@@ -0,0 +1,54 @@
+package com.kaminsky.util;
+
+/**
+ * Экранирование текста для MarkdownV2 за один проход. Скобки не экранируются,
+ * чтобы в тексте оставались рабочие ссылки вида [текст](url).
+ */
+public final class MarkdownEscaper {
+
+    private static final String SPECIAL_CHARS = "_*~`>#+-=|{}.!";
+    private static final boolean[] ESCAPED = new boolean[128];
+
+    static {
+        for (int i = 0; i < SPECIAL_CHARS.length(); i++) {
+            ESCAPED[SPECIAL_CHARS.charAt(i)] = true;
+        }
+    }
+
+    private MarkdownEscaper() {
+    }
+
+    public static String escape(String text) {
+        int length = text.length();
+        int first = 0;
+        while (first < length && !needsEscape(text.charAt(first))) {
+            first++;
+        }
+        if (first == length) {
+            return text;
+        }
+
+        StringBuilder builder = new StringBuilder(length + Math.max(16, length >> 3));
+        builder.append(text, 0, first);
+        appendEscaped(builder, text, first);
+        return builder.toString();
+    }
+
+    public static void appendEscaped(StringBuilder builder, CharSequence text) {
+        appendEscaped(builder, text, 0);
+    }
+
+    private static void appendEscaped(StringBuilder builder, CharSequence text, int from) {
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (needsEscape(c)) {
+                builder.append('\\');
+            }
+            builder.append(c);
+        }
+    }
+
+    private static boolean needsEscape(char c) {
+        return c < ESCAPED.length && ESCAPED[c];
+    }
+}
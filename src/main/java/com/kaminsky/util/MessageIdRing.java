@@ -0,0 +1,74 @@
+package com.kaminsky.util;
+
+/**
+ * Кольцевой буфер последних сообщений чата: id сообщения и дата.
+ * Хранит только примитивы, при заполнении перезаписывает самые старые записи.
+ */
+public class MessageIdRing {
+
+    private final int[] messageIds;
+    private final int[] dates;
+    private int head;
+    private int size;
+
+    public MessageIdRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Емкость буфера должна быть положительной");
+        }
+        this.messageIds = new int[capacity];
+        this.dates = new int[capacity];
+    }
+
+    public synchronized void add(int messageId, int date) {
+        messageIds[head] = messageId;
+        dates[head] = date;
+        head = (head + 1) % messageIds.length;
+        if (size < messageIds.length) {
+            size++;
+        }
+    }
+
+    /**
+     * Забирает id всех сообщений не старше notBefore (от старых к новым) и очищает буфер.
+     */
+    public synchronized int[] drain(int notBefore) {
+        int[] result = new int[size];
+        int count = 0;
+        for (int i = 0, index = oldestIndex(); i < size; i++, index = next(index)) {
+            if (dates[index] >= notBefore) {
+                result[count++] = messageIds[index];
+            }
+        }
+        head = 0;
+        size = 0;
+        return trim(result, count);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int newestDate() {
+        if (size == 0) {
+            return 0;
+        }
+        return dates[(head - 1 + dates.length) % dates.length];
+    }
+
+    private int oldestIndex() {
+        return (head - size + messageIds.length) % messageIds.length;
+    }
+
+    private int next(int index) {
+        return index + 1 == messageIds.length ? 0 : index + 1;
+    }
+
+    private static int[] trim(int[] ids, int count) {
+        if (count == ids.length) {
+            return ids;
+        }
+        int[] trimmed = new int[count];
+        System.arraycopy(ids, 0, trimmed, 0, count);
+        return trimmed;
+    }
+}
@@ -0,0 +1,133 @@
+package com.kaminsky.util;
+
+import com.vdurmont.emoji.EmojiParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Шаблон сообщения, разобранный один раз: эмодзи-алиасы уже заменены, текст разбит на литералы
+ * и места подстановки {name}. Значения экранируются под разметку шаблона и собираются
+ * в переиспользуемый буфер потока.
+ */
+public final class MessageTemplate {
+
+    public enum Escaping { NONE, HTML, MARKDOWN_V2 }
+
+    private static final int MAX_BUFFER_CAPACITY = 8192;
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    private final String[] literals;
+    private final String[] names;
+    private final Escaping escaping;
+    private final int literalLength;
+
+    private MessageTemplate(String[] literals, String[] names, Escaping escaping) {
+        this.literals = literals;
+        this.names = names;
+        this.escaping = escaping;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static MessageTemplate compile(String source, Escaping escaping) {
+        String text = EmojiParser.parseToUnicode(source);
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int literalStart = 0;
+        int open = text.indexOf('{');
+        while (open >= 0) {
+            int close = text.indexOf('}', open + 1);
+            if (close < 0) {
+                break;
+            }
+            String name = text.substring(open + 1, close);
+            if (isPlaceholderName(name)) {
+                literals.add(text.substring(literalStart, open));
+                names.add(name);
+                literalStart = close + 1;
+                open = text.indexOf('{', literalStart);
+            } else {
+                open = text.indexOf('{', open + 1);
+            }
+        }
+        literals.add(text.substring(literalStart));
+        return new MessageTemplate(literals.toArray(new String[0]), names.toArray(new String[0]), escaping);
+    }
+
+    /**
+     * Новый шаблон с уже подготовленным текстом в конце. Текст не разбирается и не экранируется.
+     */
+    public MessageTemplate append(String preparedText) {
+        String[] extended = Arrays.copyOf(literals, literals.length);
+        extended[extended.length - 1] = extended[extended.length - 1] + preparedText;
+        return new MessageTemplate(extended, names, escaping);
+    }
+
+    /**
+     * Подставляет значения в порядке мест подстановки в шаблоне.
+     */
+    public String render(Object... values) {
+        if (values.length != names.length) {
+            throw new IllegalArgumentException("Шаблон ожидает " + Arrays.toString(names) + ", передано значений: " + values.length);
+        }
+        if (names.length == 0) {
+            return literals[0];
+        }
+        StringBuilder buffer = BUFFER.get();
+        buffer.setLength(0);
+        buffer.ensureCapacity(literalLength + 32 * names.length);
+        for (int i = 0; i < names.length; i++) {
+            buffer.append(literals[i]);
+            appendValue(buffer, String.valueOf(values[i]));
+        }
+        buffer.append(literals[names.length]);
+        String result = buffer.toString();
+        if (buffer.capacity() > MAX_BUFFER_CAPACITY) {
+            BUFFER.remove();
+        }
+        return result;
+    }
+
+    public int placeholderCount() {
+        return names.length;
+    }
+
+    private void appendValue(StringBuilder buffer, String value) {
+        switch (escaping) {
+            case HTML -> appendHtmlEscaped(buffer, value);
+            case MARKDOWN_V2 -> MarkdownEscaper.appendEscaped(buffer, value);
+            default -> buffer.append(value);
+        }
+    }
+
+    private static void appendHtmlEscaped(StringBuilder buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<' -> buffer.append("&lt;");
+                case '>' -> buffer.append("&gt;");
+                case '&' -> buffer.append("&amp;");
+                case '"' -> buffer.append("&quot;");
+                default -> buffer.append(c);
+            }
+        }
+    }
+
+    private static boolean isPlaceholderName(String name) {
+        if (name.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
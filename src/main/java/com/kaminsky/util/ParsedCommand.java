@@ -0,0 +1,38 @@
+package com.kaminsky.util;
+
+/**
+ * Команда из текста сообщения: "/ban@sokrytbot причина" разбирается на имя "/ban",
+ * адресата "sokrytbot" и аргументы "причина".
+ */
+public record ParsedCommand(String name, String botUsername, String arguments) {
+
+    /**
+     * @return null, если текст не начинается с команды
+     */
+    public static ParsedCommand parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.trim();
+        if (trimmed.length() < 2 || trimmed.charAt(0) != '/') {
+            return null;
+        }
+        int end = 1;
+        while (end < trimmed.length() && !Character.isWhitespace(trimmed.charAt(end))) {
+            end++;
+        }
+        String arguments = trimmed.substring(end).trim();
+        int at = trimmed.indexOf('@');
+        if (at > 0 && at < end) {
+            return new ParsedCommand(trimmed.substring(0, at), trimmed.substring(at + 1, end), arguments);
+        }
+        return new ParsedCommand(trimmed.substring(0, end), null, arguments);
+    }
+
+    /**
+     * Команда без адресата или адресованная этому боту.
+     */
+    public boolean isAddressedTo(String botName) {
+        return botUsername == null || botUsername.equalsIgnoreCase(botName);
+    }
+}
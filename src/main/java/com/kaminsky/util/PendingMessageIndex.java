@@ -0,0 +1,70 @@
+package com.kaminsky.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Индекс (чат, пользователь) -> id сообщений для пользователей, которые еще проходят каптчу.
+ * Сообщения добавляются только для отслеживаемых пар, записи удаляются по TTL.
+ */
+public class PendingMessageIndex {
+
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final int maxMessagesPerUser;
+
+    public PendingMessageIndex(long ttlMillis, int maxMessagesPerUser) {
+        this.ttlMillis = ttlMillis;
+        this.maxMessagesPerUser = maxMessagesPerUser;
+    }
+
+    public void track(long chatId, long userId, long nowMillis) {
+        entries.computeIfAbsent(new Key(chatId, userId), key -> new Entry()).expiresAtMillis = nowMillis + ttlMillis;
+    }
+
+    public void append(long chatId, long userId, int messageId) {
+        Entry entry = entries.get(new Key(chatId, userId));
+        if (entry != null) {
+            entry.add(messageId, maxMessagesPerUser);
+        }
+    }
+
+    public int[] remove(long chatId, long userId) {
+        Entry entry = entries.remove(new Key(chatId, userId));
+        return entry == null ? new int[0] : entry.toArray();
+    }
+
+    public int evictExpired(long nowMillis) {
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.expiresAtMillis <= nowMillis);
+        return before - entries.size();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private record Key(long chatId, long userId) {
+    }
+
+    private static final class Entry {
+        private volatile long expiresAtMillis;
+        private int[] messageIds = new int[4];
+        private int count;
+
+        private synchronized void add(int messageId, int limit) {
+            if (count == limit) {
+                return;
+            }
+            if (count == messageIds.length) {
+                messageIds = Arrays.copyOf(messageIds, Math.min(limit, count * 2));
+            }
+            messageIds[count++] = messageId;
+        }
+
+        private synchronized int[] toArray() {
+            return Arrays.copyOf(messageIds, count);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.kaminsky.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Иерархическое колесо таймеров. Добавление и отмена за O(1), истекшие таймеры
+ * выдаются пачкой из {@link #advance(long)}. Уровень i покрывает wheelSize^(i+1) тиков,
+ * записи верхних уровней переносятся вниз, когда до них доходит очередь.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final int bits;
+    private final int mask;
+    private final Slot<T>[][] levels;
+    private final long maxDelta;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, int wheelSize, int levelCount, long startMillis) {
+        if (tickMillis <= 0 || levelCount <= 0 || wheelSize < 2 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Некорректные параметры колеса таймеров");
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.bits = Integer.numberOfTrailingZeros(wheelSize);
+        this.mask = wheelSize - 1;
+        this.levels = new Slot[levelCount][wheelSize];
+        for (Slot<T>[] level : levels) {
+            for (int i = 0; i < wheelSize; i++) {
+                level[i] = new Slot<>();
+            }
+        }
+        this.maxDelta = bits * levelCount >= 63 ? Long.MAX_VALUE : 1L << (bits * levelCount);
+    }
+
+    // уже наступивший срок сработает на следующем тике
+    public synchronized Timeout<T> schedule(T payload, long deadlineMillis) {
+        long tick = Math.max(ticksOf(deadlineMillis), currentTick + 1);
+        Timeout<T> timeout = new Timeout<>(payload, deadlineMillis, tick);
+        insert(timeout);
+        size++;
+        return timeout;
+    }
+
+    public synchronized boolean cancel(Timeout<T> timeout) {
+        if (timeout.slot == null) {
+            return false;
+        }
+        timeout.slot.unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Сдвигает колесо до момента nowMillis и возвращает все таймеры, чей срок наступил.
+     */
+    public synchronized List<Timeout<T>> advance(long nowMillis) {
+        long targetTick = ticksOf(nowMillis);
+        List<Timeout<T>> expired = new ArrayList<>();
+        while (currentTick < targetTick) {
+            if (size == 0) {
+                currentTick = targetTick;
+                break;
+            }
+            currentTick++;
+            cascade(1);
+            Slot<T> slot = levels[0][(int) (currentTick & mask)];
+            for (Timeout<T> timeout = slot.head; timeout != null; ) {
+                Timeout<T> next = timeout.next;
+                slot.unlink(timeout);
+                size--;
+                expired.add(timeout);
+                timeout = next;
+            }
+        }
+        return expired;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    // переносит записи уровня level вниз, когда все младшие уровни прошли полный круг
+    private void cascade(int level) {
+        if (level >= levels.length || (currentTick & ((1L << (bits * level)) - 1)) != 0) {
+            return;
+        }
+        cascade(level + 1);
+        Slot<T> slot = levels[level][(int) ((currentTick >>> (bits * level)) & mask)];
+        for (Timeout<T> timeout = slot.head; timeout != null; ) {
+            Timeout<T> next = timeout.next;
+            slot.unlink(timeout);
+            insert(timeout);
+            timeout = next;
+        }
+    }
+
+    private void insert(Timeout<T> timeout) {
+        long delta = timeout.tick - currentTick;
+        int level = 0;
+        while (level < levels.length - 1 && delta >= 1L << (bits * (level + 1))) {
+            level++;
+        }
+        // слишком далекий срок ставим в последний слот верхнего уровня, при переносе он пересчитается
+        long tick = delta >= maxDelta ? currentTick + maxDelta - 1 : timeout.tick;
+        levels[level][(int) ((tick >>> (bits * level)) & mask)].link(timeout);
+    }
+
+    private long ticksOf(long millis) {
+        return Math.floorDiv(millis - startMillis, tickMillis);
+    }
+
+    public static final class Timeout<T> {
+        private final T payload;
+        private final long deadlineMillis;
+        private final long tick;
+        private Slot<T> slot;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T payload, long deadlineMillis, long tick) {
+            this.payload = payload;
+            this.deadlineMillis = deadlineMillis;
+            this.tick = tick;
+        }
+
+        public T payload() {
+            return payload;
+        }
+
+        public long deadlineMillis() {
+            return deadlineMillis;
+        }
+    }
+
+    private static final class Slot<T> {
+        private Timeout<T> head;
+
+        private void link(Timeout<T> timeout) {
+            timeout.slot = this;
+            timeout.prev = null;
+            timeout.next = head;
+            if (head != null) {
+                head.prev = timeout;
+            }
+            head = timeout;
+        }
+
+        private void unlink(Timeout<T> timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            timeout.slot = null;
+            timeout.prev = null;
+            timeout.next = null;
+        }
+    }
+}
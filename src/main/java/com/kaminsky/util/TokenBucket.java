@@ -0,0 +1,52 @@
+package com.kaminsky.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Классический token bucket. Время передается снаружи (System.nanoTime()),
+ * синхронизацию обеспечивает вызывающий код.
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefillNanos;
+
+    public TokenBucket(double capacity, double tokensPerPeriod, long period, TimeUnit unit, long nowNanos) {
+        this.capacity = capacity;
+        this.tokensPerNano = tokensPerPeriod / unit.toNanos(period);
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    public long nanosUntilAvailable(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1) {
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+
+    public boolean tryConsume(long nowNanos) {
+        refill(nowNanos);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    public boolean isFull(long nowNanos) {
+        refill(nowNanos);
+        return tokens >= capacity;
+    }
+
+    private void refill(long nowNanos) {
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + elapsed * tokensPerNano);
+            lastRefillNanos = nowNanos;
+        }
+    }
+}
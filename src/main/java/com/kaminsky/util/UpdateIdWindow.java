@@ -0,0 +1,81 @@
+package com.kaminsky.util;
+
+import java.util.Arrays;
+
+/**
+ * Скользящее окно уже обработанных update_id: кольцо из битов фиксированного размера.
+ * Проверка и отметка - O(1), память - size / 8 байт независимо от числа обновлений.
+ * id ниже окна больше чем на его размер считается началом новой последовательности:
+ * после недели без обновлений Telegram выбирает следующий update_id случайно.
+ */
+public class UpdateIdWindow {
+
+    private final long[] bits;
+    private final int size;
+    private long maxId = Long.MIN_VALUE;
+
+    public UpdateIdWindow(int size) {
+        if (size < 64 || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Размер окна должен быть степенью двойки не меньше 64: " + size);
+        }
+        this.size = size;
+        this.bits = new long[size >>> 6];
+    }
+
+    /**
+     * Отмечает id как обработанный. Возвращает false, если id уже был в окне.
+     */
+    public synchronized boolean markIfNew(long id) {
+        if (maxId == Long.MIN_VALUE || id <= maxId - size) {
+            reset(id);
+            return true;
+        }
+        if (id > maxId) {
+            clearRange(maxId + 1, id);
+            maxId = id;
+            set(id);
+            return true;
+        }
+        if (isSet(id)) {
+            return false;
+        }
+        set(id);
+        return true;
+    }
+
+    public synchronized long getMaxId() {
+        return maxId;
+    }
+
+    private void reset(long id) {
+        Arrays.fill(bits, 0L);
+        maxId = id;
+        set(id);
+    }
+
+    // освобождает позиции для id из [from, to], там еще лежат биты старых id
+    private void clearRange(long from, long to) {
+        if (to - from + 1 >= size) {
+            Arrays.fill(bits, 0L);
+            return;
+        }
+        for (long id = from; id <= to; id++) {
+            int index = index(id);
+            bits[index >>> 6] &= ~(1L << index);
+        }
+    }
+
+    private boolean isSet(long id) {
+        int index = index(id);
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void set(long id) {
+        int index = index(id);
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private int index(long id) {
+        return (int) (id & (size - 1));
+    }
+}
@@ -15,7 +15,6 @@ import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMa
 
 import java.sql.Timestamp;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 
 import static org.mockito.Mockito.*;
 
@@ -37,10 +36,13 @@ class AdminServiceTest {
     private UserService userService;
 
     @Mock
-    private SchedulerService schedulerService;
+    private BotConfig botConfig;
 
     @Mock
-    private BotConfig botConfig;
+    private MemberStatusService memberStatusService;
+
+    @Mock
+    private ConversationStateService conversationStateService;
 
     @Mock
     private User fromUser;
@@ -133,7 +135,6 @@ class AdminServiceTest {
         verify(chatAdminService, times(1)).isAdmin(chatId, bannedUserId);
         verify(adminService, times(1)).getOrRegisterWarnedUser(message, bannedUserId);
         verify(userService, times(1)).addBannedUser(bannedUserId);
-        verify(schedulerService, times(1)).startBannedUsersCleanupTask(1, TimeUnit.MINUTES);
         verify(messageService, times(1)).executeBanChatMember(any(BanChatMember.class));
         verify(messageService, times(1)).sendHTMLMessage(eq(chatId), anyString(), eq(message.getMessageId()));
     }
@@ -300,7 +301,6 @@ class AdminServiceTest {
         verify(spyAdminService, times(1)).banUser(chatId, commandSenderId, warnedUserId, warnedUserNickname, message);
         verify(messageService, times(1)).sendHTMLMessage(eq(chatId), contains("уничтожен"), eq(messageId));
         verify(userService, times(1)).addBannedUser(warnedUserId);
-        verify(schedulerService, times(1)).startBannedUsersCleanupTask(1, TimeUnit.MINUTES);
     }
 
     @Test
@@ -0,0 +1,70 @@
+package com.kaminsky;
+
+import com.kaminsky.util.AhoCorasickMatcher;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AhoCorasickMatcherTest {
+
+    @Test
+    void testFindFirst_IgnoresCase() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(List.of("Казино", "крипта"));
+
+        assertEquals("Казино", matcher.findFirst("Лучшее КАЗИНО в интернете"));
+        assertEquals("крипта", matcher.findFirst("Крипта растет"));
+        assertNull(matcher.findFirst("Добрый вечер"));
+    }
+
+    @Test
+    void testFindFirst_UsesSuffixLinks() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(List.of("he", "she", "his", "hers"));
+
+        assertEquals("she", matcher.findFirst("ushers"));
+        assertEquals("his", matcher.findFirst("ahis"));
+        assertNull(matcher.findFirst("hx"));
+    }
+
+    @Test
+    void testCompile_SkipsBlankWords() {
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(Arrays.asList("", " ", null, "спам"));
+
+        assertEquals(1, matcher.size());
+        assertNull(matcher.findFirst("обычное сообщение"));
+        assertTrue(matcher.matches("это спам"));
+    }
+
+    @Test
+    void testFindFirst_AgreesWithContains() {
+        Random random = new Random(42);
+        List<String> words = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            words.add(randomText(random, 3 + random.nextInt(5), 6));
+        }
+        AhoCorasickMatcher matcher = AhoCorasickMatcher.compile(words);
+
+        for (int i = 0; i < 2000; i++) {
+            String text = randomText(random, random.nextInt(40), 7);
+            boolean expected = words.stream().anyMatch(text::contains);
+            String found = matcher.findFirst(text);
+
+            assertEquals(expected, found != null, text);
+            if (found != null) {
+                assertTrue(text.contains(found));
+            }
+        }
+    }
+
+    private static String randomText(Random random, int length, int alphabet) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(alphabet)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,106 @@
+package com.kaminsky;
+
+import com.kaminsky.model.BotMessage;
+import com.kaminsky.model.ChatInfo;
+import com.kaminsky.model.KeyWord;
+import com.kaminsky.model.repositories.BotMessageRepository;
+import com.kaminsky.model.repositories.ChatInfoRepository;
+import com.kaminsky.model.repositories.KeyWordRepository;
+import com.kaminsky.service.CachedDataService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@SpringJUnitConfig(CachedDataServiceTest.Config.class)
+class CachedDataServiceTest {
+
+    // репозитории не регистрируются бинами, иначе их собственные аннотации кэша тоже сработают
+    private static final ChatInfoRepository chatInfoRepository = mock(ChatInfoRepository.class);
+    private static final BotMessageRepository botMessageRepository = mock(BotMessageRepository.class);
+    private static final KeyWordRepository keyWordRepository = mock(KeyWordRepository.class);
+
+    @Configuration
+    @EnableCaching
+    static class Config {
+
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager();
+        }
+
+        @Bean
+        CachedDataService cachedDataService() {
+            return new CachedDataService(chatInfoRepository, botMessageRepository, keyWordRepository);
+        }
+    }
+
+    @Autowired
+    private CachedDataService cachedDataService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCacheNames().forEach(name -> cacheManager.getCache(name).clear());
+        reset(chatInfoRepository);
+        reset(botMessageRepository);
+        reset(keyWordRepository);
+    }
+
+    @Test
+    void testGetChatInfo_SecondCallDoesNotTouchRepository() {
+        ChatInfo chatInfo = new ChatInfo();
+        chatInfo.setChatId(-100L);
+        chatInfo.setChatTitle("Чат");
+        when(chatInfoRepository.findById(-100L)).thenReturn(Optional.of(chatInfo));
+
+        cachedDataService.getChatInfo(-100L);
+        Optional<ChatInfo> cached = cachedDataService.getChatInfo(-100L);
+
+        assertEquals("Чат", cached.get().getChatTitle());
+        verify(chatInfoRepository, times(1)).findById(-100L);
+    }
+
+    @Test
+    void testGetBotMessage_EvictedAfterWrite() {
+        BotMessage botMessage = new BotMessage();
+        botMessage.setChatId(-100L);
+        when(botMessageRepository.findById(-100L)).thenReturn(Optional.of(botMessage));
+
+        cachedDataService.getBotMessage(-100L);
+        cachedDataService.getBotMessage(-100L);
+        verify(botMessageRepository, times(1)).findById(-100L);
+
+        cachedDataService.evictBotMessage(-100L);
+        cachedDataService.getBotMessage(-100L);
+        verify(botMessageRepository, times(2)).findById(-100L);
+    }
+
+    @Test
+    void testGetKeyWords_EvictedAfterChange() {
+        KeyWord keyWord = new KeyWord();
+        keyWord.setKeyWord("спам");
+        when(keyWordRepository.findAll()).thenReturn(List.of(keyWord));
+
+        assertEquals(List.of("спам"), cachedDataService.getKeyWords());
+        cachedDataService.getKeyWords();
+        verify(keyWordRepository, times(1)).findAll();
+
+        cachedDataService.evictKeyWords();
+        cachedDataService.getKeyWords();
+        verify(keyWordRepository, times(2)).findAll();
+    }
+}
@@ -0,0 +1,55 @@
+package com.kaminsky;
+
+import com.kaminsky.service.CallbackPayload;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallbackPayloadTest {
+
+    @Test
+    void testParse_RoundTrip() {
+        CallbackPayload[] payloads = {
+                new CallbackPayload.CaptchaConfirm(42L),
+                new CallbackPayload.RaidConfirm(),
+                new CallbackPayload.ConfigMenu(-1001234567890L),
+                new CallbackPayload.WelcomeTextSetup(-100L),
+                new CallbackPayload.RecurrentTextSetup(-100L),
+                new CallbackPayload.KeyWordsSetup(),
+                new CallbackPayload.KeyWordsWipe(),
+                new CallbackPayload.Unmute(-100L, 42L, "Иван")
+        };
+        for (CallbackPayload payload : payloads) {
+            assertEquals(payload, CallbackPayload.parse(payload.encode()));
+        }
+    }
+
+    @Test
+    void testParse_LegacyData() {
+        assertEquals(new CallbackPayload.CaptchaConfirm(42L), CallbackPayload.parse("CONFIRM_BUTTON:42"));
+        assertEquals(new CallbackPayload.RaidConfirm(), CallbackPayload.parse("RAID_CONFIRM_BUTTON"));
+        assertEquals(new CallbackPayload.ConfigMenu(-100L), CallbackPayload.parse("-100"));
+        assertEquals(new CallbackPayload.WelcomeTextSetup(-100L), CallbackPayload.parse("WELCOME_TEXT_BUTTON:-100"));
+        assertEquals(new CallbackPayload.KeyWordsWipe(), CallbackPayload.parse("WIPE_KEYS_BUTTON"));
+        assertEquals(new CallbackPayload.Unmute(-100L, 42L, "a:b"), CallbackPayload.parse("UNMUTE_BUTTON:-100:42:a:b"));
+    }
+
+    @Test
+    void testParse_Invalid() {
+        assertNull(CallbackPayload.parse(null));
+        assertNull(CallbackPayload.parse(""));
+        assertNull(CallbackPayload.parse("c"));
+        assertNull(CallbackPayload.parse("c:abc"));
+        assertNull(CallbackPayload.parse("SOMETHING_ELSE"));
+    }
+
+    @Test
+    void testEncode_LongNicknameFitsTelegramLimit() {
+        String encoded = new CallbackPayload.Unmute(-1001234567890L, 1234567890L, "Очень".repeat(20)).encode();
+
+        assertTrue(encoded.getBytes(StandardCharsets.UTF_8).length <= CallbackPayload.MAX_BYTES);
+        assertInstanceOf(CallbackPayload.Unmute.class, CallbackPayload.parse(encoded));
+    }
+}
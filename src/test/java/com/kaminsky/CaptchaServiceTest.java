@@ -0,0 +1,248 @@
+package com.kaminsky;
+
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.service.CachedDataService;
+import com.kaminsky.service.CallbackPayload;
+import com.kaminsky.service.CaptchaService;
+import com.kaminsky.service.CaptchaTimeoutScheduler;
+import com.kaminsky.service.MessageService;
+import com.kaminsky.service.RaidDetector;
+import com.kaminsky.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.BanChatMember;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.DeleteMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.Update;
+import org.telegram.telegrambots.meta.api.objects.User;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class CaptchaServiceTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private MessageService messageService;
+
+    @Mock
+    private CachedDataService cachedDataService;
+
+    @Mock
+    private RaidDetector raidDetector;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private BotConfig botConfig;
+
+    private CaptchaTimeoutScheduler captchaTimeoutScheduler;
+    private CaptchaService captchaService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(botConfig.getCaptchaTimeoutSeconds()).thenReturn(120L);
+        when(botConfig.getRaidBatchSeconds()).thenReturn(5L);
+        when(botConfig.getRaidMaxBatchSize()).thenReturn(2);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(cachedDataService.getBotMessage(anyLong())).thenReturn(Optional.empty());
+        when(messageService.fixMarkdownText(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(messageService.executeCaptchaMessage(any(SendMessage.class))).thenReturn(CompletableFuture.completedFuture(42));
+        captchaTimeoutScheduler = new CaptchaTimeoutScheduler(redisTemplate, botConfig);
+        captchaService = new CaptchaService(userService, messageService, cachedDataService,
+                captchaTimeoutScheduler, raidDetector, botConfig);
+    }
+
+    @Test
+    public void testPopupCaptcha_PromptShowsConfiguredTimeout() {
+        captchaService.popupCaptcha(joinUpdate(user(2L, "Иван")), -100L);
+
+        ArgumentCaptor<SendMessage> captor = ArgumentCaptor.forClass(SendMessage.class);
+        verify(messageService).executeCaptchaMessage(captor.capture());
+        assertTrue(captor.getValue().getText().contains("в течение 2 мин."));
+    }
+
+    @Test
+    public void testHandleConfirmButton_PendingCaptchaWelcomesUser() {
+        captchaTimeoutScheduler.schedule(-100L, 2L, 10);
+
+        captchaService.handleConfirmButton(callbackQuery(-100L, 2L, 10), new CallbackPayload.CaptchaConfirm(2L));
+
+        verify(messageService, times(1)).executeEditMessage(any(EditMessageText.class));
+        verify(messageService, times(1)).deleteUserMessages(-100L, 2L);
+    }
+
+    @Test
+    public void testHandleConfirmButton_AlreadyExpired() {
+        captchaService.handleConfirmButton(callbackQuery(-100L, 2L, 10), new CallbackPayload.CaptchaConfirm(2L));
+
+        verify(messageService, never()).executeEditMessage(any(EditMessageText.class));
+        verify(messageService, never()).deleteUserMessages(anyLong(), anyLong());
+    }
+
+    @Test
+    public void testPopupCaptcha_RaidJoinersShareOneCaptcha() {
+        when(raidDetector.onJoin(-100L)).thenReturn(true);
+
+        captchaService.popupCaptcha(joinUpdate(user(2L, "Иван"), user(3L, "Петр")), -100L);
+
+        ArgumentCaptor<SendMessage> captor = ArgumentCaptor.forClass(SendMessage.class);
+        verify(messageService, times(1)).executeCaptchaMessage(captor.capture());
+        assertTrue(captor.getValue().getText().contains("Иван"));
+        assertTrue(captor.getValue().getText().contains("Петр"));
+        assertEquals(42, captchaTimeoutScheduler.getPending(-100L, 2L).messageId());
+        assertEquals(42, captchaTimeoutScheduler.getPending(-100L, 3L).messageId());
+    }
+
+    @Test
+    public void testHandleRaidConfirmButton_DeletesSharedCaptchaAfterLastUser() {
+        when(raidDetector.onJoin(-100L)).thenReturn(true);
+        captchaService.popupCaptcha(joinUpdate(user(2L, "Иван"), user(3L, "Петр")), -100L);
+
+        captchaService.handleRaidConfirmButton(callbackQuery(-100L, 2L, 42));
+        verify(messageService, never()).executeDeleteMessage(any(DeleteMessage.class));
+
+        captchaService.handleRaidConfirmButton(callbackQuery(-100L, 3L, 42));
+        verify(messageService, times(1)).executeDeleteMessage(new DeleteMessage("-100", 42));
+    }
+
+    @Test
+    public void testRestoreSharedCaptchas_CountsRestoredUsers() {
+        long deadline = System.currentTimeMillis() + 60000;
+        when(zSetOperations.rangeWithScores(anyString(), eq(0L), eq(-1L))).thenReturn(Set.of(
+                new DefaultTypedTuple<>("-100:2:42", (double) deadline),
+                new DefaultTypedTuple<>("-100:3:42", (double) deadline)));
+        captchaTimeoutScheduler.restorePending();
+        captchaService.restoreSharedCaptchas();
+
+        captchaService.handleRaidConfirmButton(callbackQuery(-100L, 2L, 42));
+        verify(messageService, never()).executeDeleteMessage(any(DeleteMessage.class));
+
+        captchaService.handleRaidConfirmButton(callbackQuery(-100L, 3L, 42));
+        verify(messageService, times(1)).executeDeleteMessage(new DeleteMessage("-100", 42));
+    }
+
+    @Test
+    public void testKickExpiredUsers_DeletesSharedCaptchaOnce() throws InterruptedException {
+        long overdue = System.currentTimeMillis() - 1000;
+        when(zSetOperations.rangeWithScores(anyString(), eq(0L), eq(-1L))).thenReturn(Set.of(
+                new DefaultTypedTuple<>("-100:2:42", (double) overdue),
+                new DefaultTypedTuple<>("-100:3:42", (double) overdue)));
+        captchaTimeoutScheduler.restorePending();
+        captchaService.restoreSharedCaptchas();
+
+        Thread.sleep(1100);
+        captchaTimeoutScheduler.tick();
+
+        verify(messageService, times(2)).executeBanChatMember(any(BanChatMember.class));
+        verify(userService, times(1)).addBannedUser(2L);
+        verify(userService, times(1)).addBannedUser(3L);
+        verify(messageService, times(1)).executeDeleteMessage(new DeleteMessage("-100", 42));
+    }
+
+    @Test
+    public void testPopupCaptcha_RaidJoinersShareOneDeadline() {
+        when(raidDetector.onJoin(-100L)).thenReturn(true);
+
+        captchaService.popupCaptcha(joinUpdate(user(2L, "Иван"), user(3L, "Петр")), -100L);
+
+        ArgumentCaptor<Double> first = ArgumentCaptor.forClass(Double.class);
+        ArgumentCaptor<Double> second = ArgumentCaptor.forClass(Double.class);
+        verify(zSetOperations).add(eq("sokrytbot:captcha:pending"), eq("-100:2:42"), first.capture());
+        verify(zSetOperations).add(eq("sokrytbot:captcha:pending"), eq("-100:3:42"), second.capture());
+        assertEquals(first.getValue(), second.getValue());
+    }
+
+    @Test
+    public void testKickExpiredUsers_SharedCaptchaDeletedAfterLastTick() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        when(zSetOperations.rangeWithScores(anyString(), eq(0L), eq(-1L))).thenReturn(Set.of(
+                new DefaultTypedTuple<>("-100:2:42", (double) (now - 1000)),
+                new DefaultTypedTuple<>("-100:3:42", (double) (now + 2500))));
+        captchaTimeoutScheduler.restorePending();
+        captchaService.restoreSharedCaptchas();
+
+        Thread.sleep(1100);
+        captchaTimeoutScheduler.tick();
+        verify(userService, times(1)).addBannedUser(2L);
+        verify(messageService, never()).executeDeleteMessage(any(DeleteMessage.class));
+
+        Thread.sleep(2500);
+        captchaTimeoutScheduler.tick();
+        verify(userService, times(1)).addBannedUser(3L);
+        verify(messageService, times(1)).executeDeleteMessage(new DeleteMessage("-100", 42));
+    }
+
+    @Test
+    public void testRestoreSharedCaptchas_SingleCaptchaDeletedOnExpiry() throws InterruptedException {
+        when(zSetOperations.rangeWithScores(anyString(), eq(0L), eq(-1L))).thenReturn(Set.of(
+                new DefaultTypedTuple<>("-100:2:10", (double) (System.currentTimeMillis() - 1000))));
+        captchaTimeoutScheduler.restorePending();
+        captchaService.restoreSharedCaptchas();
+
+        Thread.sleep(1100);
+        captchaTimeoutScheduler.tick();
+
+        verify(messageService, times(1)).executeDeleteMessage(new DeleteMessage("-100", 10));
+    }
+
+    @Test
+    public void testFlushRaidBatchesOnShutdown_SendsOpenBatch() {
+        when(raidDetector.onJoin(-100L)).thenReturn(true);
+        captchaService.popupCaptcha(joinUpdate(user(2L, "Иван")), -100L);
+        verify(messageService, never()).executeCaptchaMessage(any(SendMessage.class));
+
+        captchaService.flushRaidBatchesOnShutdown();
+
+        verify(messageService, times(1)).executeCaptchaMessage(any(SendMessage.class));
+        assertEquals(42, captchaTimeoutScheduler.getPending(-100L, 2L).messageId());
+        verify(zSetOperations).add(eq("sokrytbot:captcha:pending"), eq("-100:2:42"), anyDouble());
+    }
+
+    private static Update joinUpdate(User... users) {
+        Message message = new Message();
+        message.setNewChatMembers(List.of(users));
+        Update update = new Update();
+        update.setMessage(message);
+        return update;
+    }
+
+    private static CallbackQuery callbackQuery(Long chatId, Long userId, Integer messageId) {
+        Message message = mock(Message.class);
+        when(message.getChatId()).thenReturn(chatId);
+        when(message.getMessageId()).thenReturn(messageId);
+        CallbackQuery callbackQuery = new CallbackQuery();
+        callbackQuery.setFrom(user(userId, "Иван"));
+        callbackQuery.setMessage(message);
+        return callbackQuery;
+    }
+
+    private static User user(Long id, String firstName) {
+        User user = new User();
+        user.setId(id);
+        user.setFirstName(firstName);
+        return user;
+    }
+}
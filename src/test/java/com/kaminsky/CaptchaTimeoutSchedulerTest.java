@@ -0,0 +1,101 @@
+package com.kaminsky;
+
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.service.CaptchaTimeoutScheduler;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class CaptchaTimeoutSchedulerTest {
+
+    private static final String PENDING_KEY = "sokrytbot:captcha:pending";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private BotConfig botConfig;
+
+    private CaptchaTimeoutScheduler scheduler;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(botConfig.getCaptchaTimeoutSeconds()).thenReturn(180L);
+        scheduler = new CaptchaTimeoutScheduler(redisTemplate, botConfig);
+    }
+
+    @Test
+    public void testSchedule_PersistsAndCancelRemoves() {
+        scheduler.schedule(-100L, 2L, 10);
+
+        verify(zSetOperations).add(eq(PENDING_KEY), eq("-100:2:10"), anyDouble());
+        assertNotNull(scheduler.getPending(-100L, 2L));
+
+        assertEquals(10, scheduler.cancel(-100L, 2L).messageId());
+        assertNull(scheduler.getPending(-100L, 2L));
+        assertNull(scheduler.cancel(-100L, 2L));
+        assertEquals(0, scheduler.getPendingCount());
+        verify(zSetOperations).remove(PENDING_KEY, "-100:2:10");
+    }
+
+    @Test
+    public void testSchedule_ReplacesPreviousCaptcha() {
+        scheduler.schedule(-100L, 2L, 10);
+
+        CaptchaTimeoutScheduler.PendingCaptcha previous = scheduler.schedule(-100L, 2L, 11);
+
+        assertEquals(10, previous.messageId());
+        assertEquals(1, scheduler.getPendingCount());
+        verify(zSetOperations).remove(PENDING_KEY, "-100:2:10");
+    }
+
+    @Test
+    public void testSchedule_SameCaptchaAgainStaysPersisted() {
+        scheduler.schedule(-100L, 2L, 10);
+
+        CaptchaTimeoutScheduler.PendingCaptcha previous = scheduler.schedule(-100L, 2L, 10);
+
+        assertEquals(10, previous.messageId());
+        assertEquals(1, scheduler.getPendingCount());
+        verify(zSetOperations, times(2)).add(eq(PENDING_KEY), eq("-100:2:10"), anyDouble());
+        verify(zSetOperations, never()).remove(anyString(), any());
+    }
+
+    @Test
+    public void testRestorePending_OverdueCaptchaExpiresOnNextTick() throws InterruptedException {
+        Set<ZSetOperations.TypedTuple<String>> stored = Set.of(
+                new DefaultTypedTuple<>("-100:2:10", (double) (System.currentTimeMillis() - 60000)),
+                new DefaultTypedTuple<>("-100:3:11", (double) (System.currentTimeMillis() + 60000)),
+                new DefaultTypedTuple<>("мусор", 0.0));
+        when(zSetOperations.rangeWithScores(PENDING_KEY, 0, -1)).thenReturn(stored);
+        List<CaptchaTimeoutScheduler.PendingCaptcha> expired = new ArrayList<>();
+        scheduler.setExpiryHandler(expired::addAll);
+
+        scheduler.restorePending();
+        assertEquals(2, scheduler.getPendingCount());
+
+        Thread.sleep(1100);
+        scheduler.tick();
+
+        assertEquals(List.of(new CaptchaTimeoutScheduler.PendingCaptcha(-100L, 2L, 10)), expired);
+        assertNotNull(scheduler.getPending(-100L, 3L));
+        verify(zSetOperations).remove(PENDING_KEY, "-100:2:10");
+    }
+}
@@ -1,19 +1,49 @@
 package com.kaminsky;
 
+import com.kaminsky.config.BotConfig;
 import com.kaminsky.service.ChatAdminService;
+import com.kaminsky.service.MessageService;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatAdministrators;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.ChatMemberUpdated;
+import org.telegram.telegrambots.meta.api.objects.User;
+import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMember;
+import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMemberAdministrator;
+import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMemberMember;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
 
 public class ChatAdminServiceTest {
 
-    @InjectMocks
+    @Mock
+    private MessageService messageService;
+
+    @Mock
+    private BotConfig botConfig;
+
     private ChatAdminService chatAdminService;
 
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(botConfig.getAdminsTtlMinutes()).thenReturn(60L);
+        chatAdminService = new ChatAdminService(messageService, botConfig);
+    }
+
     @Test
     public void testIsAdmin_UserIsAdmin() {
         chatAdminService.putIntoChatAdministrators(1L, Arrays.asList(2L, 3L));
@@ -31,4 +61,102 @@ public class ChatAdminServiceTest {
 
         assertFalse(isAdmin);
     }
+
+    @Test
+    public void testIsAdmin_ConcurrentMissesShareOneRequest() throws Exception {
+        CompletableFuture<List<ChatMember>> response = new CompletableFuture<>();
+        when(messageService.executeGetChatAdministratorsAsync(any(GetChatAdministrators.class))).thenReturn(response);
+
+        CompletableFuture<Boolean> first = CompletableFuture.supplyAsync(() -> chatAdminService.isAdmin(-100L, 2L));
+        CompletableFuture<Boolean> second = CompletableFuture.supplyAsync(() -> chatAdminService.isAdmin(-100L, 3L));
+        verify(messageService, timeout(5000)).executeGetChatAdministratorsAsync(any(GetChatAdministrators.class));
+        response.complete(List.of(administrator(2L)));
+
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertFalse(second.get(5, TimeUnit.SECONDS));
+        assertTrue(chatAdminService.isAdmin(-100L, 2L));
+        verify(messageService, times(1)).executeGetChatAdministratorsAsync(any(GetChatAdministrators.class));
+    }
+
+    @Test
+    public void testIsAdmin_StaleEntryAnsweredWithoutWaiting() {
+        when(botConfig.getAdminsTtlMinutes()).thenReturn(0L);
+        ChatAdminService staleService = new ChatAdminService(messageService, botConfig);
+        when(messageService.executeGetChatAdministratorsAsync(any(GetChatAdministrators.class))).thenReturn(new CompletableFuture<>());
+        staleService.putIntoChatAdministrators(-100L, List.of(2L));
+
+        assertTrue(staleService.isAdmin(-100L, 2L));
+        assertTrue(staleService.isAdmin(-100L, 2L));
+        verify(messageService, times(1)).executeGetChatAdministratorsAsync(any(GetChatAdministrators.class));
+    }
+
+    @Test
+    public void testIsAdmin_LoadStartedBeforeDemotionIsDiscarded() {
+        when(botConfig.getAdminsTtlMinutes()).thenReturn(0L);
+        ChatAdminService staleService = new ChatAdminService(messageService, botConfig);
+        CompletableFuture<List<ChatMember>> response = new CompletableFuture<>();
+        when(messageService.executeGetChatAdministratorsAsync(any(GetChatAdministrators.class))).thenReturn(response);
+        staleService.putIntoChatAdministrators(-100L, List.of(2L));
+        staleService.isAdmin(-100L, 2L);
+
+        ChatMemberMember demoted = new ChatMemberMember();
+        demoted.setUser(user(2L));
+        staleService.onChatMemberUpdated(chatMemberUpdated(-100L, demoted));
+        response.complete(List.of(administrator(2L)));
+
+        assertEquals(Set.of(), staleService.getAdministeredChats(2L));
+    }
+
+    @Test
+    public void testOnChatMemberUpdated_PromotionAndDemotion() {
+        chatAdminService.putIntoChatAdministrators(-100L, List.of(2L));
+
+        chatAdminService.onChatMemberUpdated(chatMemberUpdated(-100L, administrator(5L)));
+        assertTrue(chatAdminService.isAdmin(-100L, 5L));
+
+        ChatMemberMember demoted = new ChatMemberMember();
+        demoted.setUser(user(2L));
+        chatAdminService.onChatMemberUpdated(chatMemberUpdated(-100L, demoted));
+        assertFalse(chatAdminService.isAdmin(-100L, 2L));
+
+        verify(messageService, never()).executeGetChatAdministratorsAsync(any(GetChatAdministrators.class));
+    }
+
+    @Test
+    public void testGetAdministeredChats_FollowsReloadsAndUpdates() {
+        chatAdminService.putIntoChatAdministrators(-100L, List.of(2L, 3L));
+        chatAdminService.putIntoChatAdministrators(-200L, List.of(2L));
+
+        assertEquals(Set.of(-100L, -200L), chatAdminService.getAdministeredChats(2L));
+
+        chatAdminService.putIntoChatAdministrators(-100L, List.of(3L));
+        assertEquals(Set.of(-200L), chatAdminService.getAdministeredChats(2L));
+
+        ChatMemberMember demoted = new ChatMemberMember();
+        demoted.setUser(user(2L));
+        chatAdminService.onChatMemberUpdated(chatMemberUpdated(-200L, demoted));
+        assertFalse(chatAdminService.isAdmin(2L));
+        assertTrue(chatAdminService.getAdministeredChats(2L).isEmpty());
+    }
+
+    private static ChatMember administrator(Long userId) {
+        ChatMemberAdministrator administrator = new ChatMemberAdministrator();
+        administrator.setUser(user(userId));
+        return administrator;
+    }
+
+    private static User user(Long userId) {
+        User user = new User();
+        user.setId(userId);
+        return user;
+    }
+
+    private static ChatMemberUpdated chatMemberUpdated(Long chatId, ChatMember newMember) {
+        Chat chat = new Chat();
+        chat.setId(chatId);
+        ChatMemberUpdated update = new ChatMemberUpdated();
+        update.setChat(chat);
+        update.setNewChatMember(newMember);
+        return update;
+    }
 }
@@ -1,8 +1,11 @@
 package com.kaminsky;
 
 import com.kaminsky.config.BotConfig;
+import com.kaminsky.service.AdminCommand;
 import com.kaminsky.service.AdminService;
 import com.kaminsky.service.CommandHandler;
+import com.kaminsky.service.ConversationStateService;
+import com.kaminsky.service.KeyWordMatcher;
 import com.kaminsky.service.MessageService;
 import com.kaminsky.service.UserService;
 import org.junit.jupiter.api.BeforeEach;
@@ -31,6 +34,12 @@ class CommandHandlerTest {
     @Mock
     private BotConfig config;
 
+    @Mock
+    private KeyWordMatcher keyWordMatcher;
+
+    @Mock
+    private ConversationStateService conversationStateService;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
@@ -136,7 +145,7 @@ class CommandHandlerTest {
     }
 
     @Test
-    void testHandleCommand_UnknownCommand_NotHandled() {
+    void testHandleCommand_UnknownCommand() {
         Message message = mock(Message.class);
         when(message.getText()).thenReturn("/unknown");
         when(message.getChatId()).thenReturn(12345L);
@@ -145,32 +154,52 @@ class CommandHandlerTest {
         when(message.getChat().isGroupChat()).thenReturn(false);
         when(message.getChat().isUserChat()).thenReturn(true);
 
-        when(userService.isCommandHandled()).thenReturn(false);
-
         commandHandler.handleCommand(message);
 
-        verify(userService, times(1)).isCommandHandled();
         verify(messageService, times(1)).sendMessage(12345L, BotFinalVariables.UNKNOWN_COMMAND);
-        verify(userService, never()).setCommandHandled(false);
     }
 
     @Test
-    void testHandleCommand_UnknownCommand_Handled() {
+    void testHandleNonCommandMessage_AwaitedWelcomeText() {
+        Long chatId = 12345L;
+        Long targetChatId = -100L;
         Message message = mock(Message.class);
-        when(message.getText()).thenReturn("/unknown");
-        when(message.getChatId()).thenReturn(12345L);
-        when(message.getFrom()).thenReturn(mock(User.class));
-        when(message.getChat()).thenReturn(mock(Chat.class));
-        when(message.getChat().isGroupChat()).thenReturn(false);
-        when(message.getChat().isUserChat()).thenReturn(true);
+        User fromUser = mock(User.class);
+        Chat chat = mock(Chat.class);
+        when(message.getText()).thenReturn("Добро пожаловать!");
+        when(message.getChatId()).thenReturn(chatId);
+        when(message.getFrom()).thenReturn(fromUser);
+        when(fromUser.getId()).thenReturn(chatId);
+        when(message.getChat()).thenReturn(chat);
+        when(chat.isUserChat()).thenReturn(true);
+        when(config.getBotName()).thenReturn("sokrytbot");
+        when(conversationStateService.take(chatId)).thenReturn(
+                new ConversationStateService.Conversation(ConversationStateService.Step.WELCOME_TEXT, targetChatId));
+
+        commandHandler.handleNonCommandMessage(message);
+
+        verify(userService, times(1)).saveWelcomeText(targetChatId, "Добро пожаловать!");
+        verify(messageService, never()).sendMessage(chatId, BotFinalVariables.UNKNOWN_COMMAND);
+    }
 
-        when(userService.isCommandHandled()).thenReturn(true);
+    @Test
+    void testHandleNonCommandMessage_NothingAwaited() {
+        Long chatId = 12345L;
+        Message message = mock(Message.class);
+        User fromUser = mock(User.class);
+        Chat chat = mock(Chat.class);
+        when(message.getText()).thenReturn("Добро пожаловать!");
+        when(message.getChatId()).thenReturn(chatId);
+        when(message.getFrom()).thenReturn(fromUser);
+        when(fromUser.getId()).thenReturn(chatId);
+        when(message.getChat()).thenReturn(chat);
+        when(chat.isUserChat()).thenReturn(true);
+        when(config.getBotName()).thenReturn("sokrytbot");
 
-        commandHandler.handleCommand(message);
+        commandHandler.handleNonCommandMessage(message);
 
-        verify(userService, times(1)).isCommandHandled();
-        verify(messageService, never()).sendMessage(anyLong(), anyString());
-        verify(userService, times(1)).setCommandHandled(false);
+        verify(userService, never()).saveWelcomeText(anyLong(), anyString());
+        verify(messageService, times(1)).sendMessage(chatId, BotFinalVariables.UNKNOWN_COMMAND);
     }
 
     @Test
@@ -214,10 +243,64 @@ class CommandHandlerTest {
         when(message.getChat()).thenReturn(mock(Chat.class));
         when(message.getChat().isGroupChat()).thenReturn(true);
         when(message.getChat().isUserChat()).thenReturn(false);
+        when(config.getBotName()).thenReturn("sokrytbot");
 
         commandHandler.handleCommand(message);
 
-        verify(adminService, times(1)).handleAdminCommandWithReply(chatId, userId, text, message);
+        verify(adminService, times(1)).handleAdminCommandWithReply(chatId, userId, AdminCommand.BAN, message);
     }
 
-}
\ No newline at end of file
+    @Test
+    void testHandleCommand_GroupCommandWithoutUsername() {
+        Long chatId = 12345L;
+        Message message = mock(Message.class);
+        Chat chat = mock(Chat.class);
+        when(message.getText()).thenReturn("/wipe");
+        when(message.getChatId()).thenReturn(chatId);
+        when(message.getChat()).thenReturn(chat);
+        when(chat.isSuperGroupChat()).thenReturn(true);
+        when(config.getBotName()).thenReturn("sokrytbot");
+
+        commandHandler.handleCommand(message);
+
+        verify(adminService, times(1)).wipeAllMessages(chatId, message);
+    }
+
+    @Test
+    void testHandleCommand_CommandForAnotherBotIgnored() {
+        Message message = mock(Message.class);
+        Chat chat = mock(Chat.class);
+        when(message.getText()).thenReturn("/ban@otherbot");
+        when(message.getChatId()).thenReturn(12345L);
+        when(message.getChat()).thenReturn(chat);
+        when(chat.isSuperGroupChat()).thenReturn(true);
+        when(config.getBotName()).thenReturn("sokrytbot");
+
+        commandHandler.handleCommand(message);
+
+        verifyNoInteractions(adminService);
+        verifyNoInteractions(messageService);
+    }
+
+    @Test
+    void testHandleNonCommandMessage_KeyWordInGroup() {
+        Long chatId = -100L;
+        Message message = mock(Message.class);
+        User fromUser = mock(User.class);
+        Chat chat = mock(Chat.class);
+        when(message.getText()).thenReturn("Купите наш КРИПТОкошелек");
+        when(message.getChatId()).thenReturn(chatId);
+        when(message.getFrom()).thenReturn(fromUser);
+        when(fromUser.getId()).thenReturn(2L);
+        when(fromUser.getFirstName()).thenReturn("Spammer");
+        when(message.getChat()).thenReturn(chat);
+        when(chat.isSuperGroupChat()).thenReturn(true);
+        when(config.getBotName()).thenReturn("sokrytbot");
+        when(keyWordMatcher.findKeyWord("Купите наш КРИПТОкошелек")).thenReturn("крипто");
+
+        commandHandler.handleNonCommandMessage(message);
+
+        verify(messageService, times(1)).sendRandomGif(chatId);
+        verify(adminService, times(1)).muteUser(chatId, 2L, "Spammer", message, true);
+    }
+}
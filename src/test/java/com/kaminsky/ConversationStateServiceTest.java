@@ -0,0 +1,96 @@
+package com.kaminsky;
+
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.service.ConversationStateService;
+import com.kaminsky.service.ConversationStateService.Conversation;
+import com.kaminsky.service.ConversationStateService.Step;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class ConversationStateServiceTest {
+
+    @Mock
+    private BotConfig botConfig;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(botConfig.getConversationTtlMinutes()).thenReturn(10L);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    public void testTake_ReturnsStartedStepOnce() {
+        ConversationStateService service = new ConversationStateService(redisTemplate, botConfig);
+
+        service.start(1L, Step.WELCOME_TEXT, -100L);
+
+        assertEquals(new Conversation(Step.WELCOME_TEXT, -100L), service.take(1L));
+        assertNull(service.take(1L));
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    public void testTake_StatePerUser() {
+        ConversationStateService service = new ConversationStateService(redisTemplate, botConfig);
+
+        service.start(1L, Step.WELCOME_TEXT, -100L);
+        service.start(2L, Step.RECURRENT_TEXT, -200L);
+
+        assertNull(service.take(3L));
+        assertEquals(new Conversation(Step.RECURRENT_TEXT, -200L), service.take(2L));
+        assertEquals(new Conversation(Step.WELCOME_TEXT, -100L), service.take(1L));
+    }
+
+    @Test
+    public void testTake_Expired() {
+        when(botConfig.getConversationTtlMinutes()).thenReturn(0L);
+        ConversationStateService service = new ConversationStateService(redisTemplate, botConfig);
+
+        service.start(1L, Step.KEY_WORDS, null);
+        service.evictExpired();
+
+        assertEquals(0, service.size());
+        assertNull(service.take(1L));
+    }
+
+    @Test
+    public void testTake_FromRedis() {
+        when(botConfig.isConversationRedisEnabled()).thenReturn(true);
+        when(valueOperations.getAndDelete("sokrytbot:conversation:1")).thenReturn("UNBAN_PETITION");
+        ConversationStateService service = new ConversationStateService(redisTemplate, botConfig);
+
+        service.start(1L, Step.UNBAN_PETITION, null);
+
+        verify(valueOperations, times(1)).set("sokrytbot:conversation:1", "UNBAN_PETITION", Duration.ofMinutes(10));
+        assertEquals(new Conversation(Step.UNBAN_PETITION, null), service.take(1L));
+    }
+
+    @Test
+    public void testTake_RedisUnavailable() {
+        when(botConfig.isConversationRedisEnabled()).thenReturn(true);
+        doThrow(new RuntimeException("down")).when(valueOperations).set(anyString(), anyString(), any(Duration.class));
+        when(valueOperations.getAndDelete(anyString())).thenThrow(new RuntimeException("down"));
+        ConversationStateService service = new ConversationStateService(redisTemplate, botConfig);
+
+        service.start(1L, Step.RECURRENT_TEXT, -100L);
+
+        assertEquals(new Conversation(Step.RECURRENT_TEXT, -100L), service.take(1L));
+    }
+}
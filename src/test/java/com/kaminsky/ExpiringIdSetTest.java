@@ -0,0 +1,43 @@
+package com.kaminsky;
+
+import com.kaminsky.util.ExpiringIdSet;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiringIdSetTest {
+
+    @Test
+    void testContains_EachEntryExpiresOnItsOwn() {
+        ExpiringIdSet set = new ExpiringIdSet(60000);
+        set.add(1L, 0);
+        set.add(2L, 30000);
+
+        assertTrue(set.contains(1L, 59999));
+        assertFalse(set.contains(1L, 60000));
+        assertTrue(set.contains(2L, 60000));
+        assertFalse(set.contains(2L, 90000));
+    }
+
+    @Test
+    void testAdd_RepeatedBanExtendsTtl() {
+        ExpiringIdSet set = new ExpiringIdSet(60000);
+        set.add(1L, 0);
+        set.add(1L, 50000);
+
+        assertTrue(set.contains(1L, 100000));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void testEvictExpired_RemovesOnlyExpired() {
+        ExpiringIdSet set = new ExpiringIdSet(60000);
+        set.add(1L, 0);
+        set.add(2L, 10000);
+        set.add(3L, 50000);
+
+        assertEquals(2, set.evictExpired(70000));
+        assertEquals(1, set.size());
+        assertTrue(set.contains(3L, 70000));
+    }
+}
@@ -0,0 +1,88 @@
+package com.kaminsky;
+
+import com.kaminsky.service.GifFileIdCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class GifFileIdCacheTest {
+
+    private static final String FILE_IDS_KEY = "sokrytbot:gif-file-ids";
+    private static final String URL = "https://i.giphy.com/media/test/giphy.gif";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    private GifFileIdCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(redisTemplate.<Object, Object>opsForHash()).thenReturn(hashOperations);
+        cache = new GifFileIdCache(redisTemplate);
+    }
+
+    @Test
+    public void testLoad_RestoresStoredFileIds() {
+        when(hashOperations.entries(FILE_IDS_KEY)).thenReturn(Map.of(URL, "file-1"));
+
+        cache.load();
+
+        assertEquals("file-1", cache.get(URL));
+    }
+
+    @Test
+    public void testLoad_RedisUnavailable() {
+        when(hashOperations.entries(FILE_IDS_KEY)).thenThrow(new RuntimeException("connection refused"));
+
+        cache.load();
+
+        assertNull(cache.get(URL));
+    }
+
+    @Test
+    public void testPut_PersistsOnlyNewFileId() {
+        cache.put(URL, "file-1");
+        cache.put(URL, "file-1");
+
+        assertEquals("file-1", cache.get(URL));
+        verify(hashOperations, times(1)).put(FILE_IDS_KEY, URL, "file-1");
+    }
+
+    @Test
+    public void testPut_NullFileIdIgnored() {
+        cache.put(URL, null);
+
+        assertNull(cache.get(URL));
+        verify(hashOperations, never()).put(any(), any(), any());
+    }
+
+    @Test
+    public void testEvict_RemovesFileId() {
+        cache.put(URL, "file-1");
+
+        cache.evict(URL);
+
+        assertNull(cache.get(URL));
+        verify(hashOperations).delete(FILE_IDS_KEY, URL);
+    }
+
+    @Test
+    public void testEvict_UnknownUrl() {
+        cache.evict(URL);
+
+        verify(hashOperations, never()).delete(any(), any());
+    }
+}
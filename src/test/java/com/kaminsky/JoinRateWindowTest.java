@@ -0,0 +1,40 @@
+package com.kaminsky;
+
+import com.kaminsky.util.JoinRateWindow;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JoinRateWindowTest {
+
+    @Test
+    void testRecord_TriggersOnlyWhenThresholdReachedWithinWindow() {
+        JoinRateWindow window = new JoinRateWindow(3, 10000);
+
+        assertFalse(window.record(1000));
+        assertFalse(window.record(2000));
+        assertTrue(window.record(3000));
+        assertTrue(window.record(4000));
+    }
+
+    @Test
+    void testRecord_SlowJoinsNeverTrigger() {
+        JoinRateWindow window = new JoinRateWindow(3, 10000);
+
+        for (long time = 0; time < 100000; time += 6000) {
+            assertFalse(window.record(time));
+        }
+        assertEquals(96000, window.newestJoin());
+    }
+
+    @Test
+    void testRecord_WindowSlidesPastOldJoins() {
+        JoinRateWindow window = new JoinRateWindow(3, 10000);
+        window.record(0);
+        window.record(1000);
+
+        assertFalse(window.record(12000));
+        assertFalse(window.record(13000));
+        assertTrue(window.record(14000));
+    }
+}
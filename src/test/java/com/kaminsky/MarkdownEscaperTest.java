@@ -0,0 +1,70 @@
+package com.kaminsky;
+
+import com.kaminsky.util.MarkdownEscaper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MarkdownEscaperTest {
+
+    // прежняя реализация MessageService.fixMarkdownText, вывод должен совпадать с ней символ в символ
+    static String chainedReplace(String text) {
+        return text
+                .replace("_", "\\_")
+                .replace("*", "\\*")
+                .replace("~", "\\~")
+                .replace("`", "\\`")
+                .replace(">", "\\>")
+                .replace("#", "\\#")
+                .replace("+", "\\+")
+                .replace("-", "\\-")
+                .replace("=", "\\=")
+                .replace("|", "\\|")
+                .replace("{", "\\{")
+                .replace("}", "\\}")
+                .replace(".", "\\.")
+                .replace("!", "\\!");
+    }
+
+    @Test
+    void testEscape_PlainTextReturnedAsIs() {
+        String text = "Добро пожаловать в чат";
+
+        assertSame(text, MarkdownEscaper.escape(text));
+    }
+
+    @Test
+    void testEscape_KeepsLinksWorking() {
+        String text = "[Перейти на сайт](https://example.com) и *жирный* текст!";
+
+        assertEquals("[Перейти на сайт](https://example\\.com) и \\*жирный\\* текст\\!", MarkdownEscaper.escape(text));
+    }
+
+    @Test
+    void testEscape_SameAsChainedReplace() {
+        String[] samples = {
+                "",
+                "___Этот текст будет и жирным, и курсивом___",
+                "~Этот текст будет зачеркнут~ `code` > quote #tag a+b-c=d |x| {y}.!",
+                "[Имя пользователя](tg://user?id=12345)\\_уже\\экранировано",
+                "🙂 эмодзи и суррогатные пары 👉_👈"
+        };
+        for (String sample : samples) {
+            assertEquals(chainedReplace(sample), MarkdownEscaper.escape(sample));
+        }
+
+        String alphabet = "ab Я_*~`>#+-=|{}.!()[]\\\n😀";
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(64);
+            for (int j = 0; j < length; j++) {
+                builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            String text = builder.toString();
+            assertEquals(chainedReplace(text), MarkdownEscaper.escape(text));
+        }
+    }
+}
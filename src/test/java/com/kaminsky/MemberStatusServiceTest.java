@@ -0,0 +1,104 @@
+package com.kaminsky;
+
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.service.MemberStatusService;
+import com.kaminsky.service.MessageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatMember;
+import org.telegram.telegrambots.meta.api.objects.Chat;
+import org.telegram.telegrambots.meta.api.objects.ChatMemberUpdated;
+import org.telegram.telegrambots.meta.api.objects.User;
+import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMemberBanned;
+import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMemberMember;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+public class MemberStatusServiceTest {
+
+    @Mock
+    private MessageService messageService;
+
+    @Mock
+    private BotConfig botConfig;
+
+    private MemberStatusService memberStatusService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(botConfig.getMemberStatusTtlSeconds()).thenReturn(60L);
+        memberStatusService = new MemberStatusService(messageService, botConfig);
+    }
+
+    @Test
+    public void testIsBanned_SecondLookupServedFromCache() {
+        ChatMemberMember member = new ChatMemberMember();
+        member.setUser(user(2L));
+        when(messageService.executeGetChatMember(any(GetChatMember.class))).thenReturn(member);
+
+        assertFalse(memberStatusService.isBanned(-100L, 2L));
+        assertFalse(memberStatusService.isBanned(-100L, 2L));
+
+        verify(messageService, times(1)).executeGetChatMember(any(GetChatMember.class));
+    }
+
+    @Test
+    public void testIsBanned_FailedLookupNotCached() {
+        when(messageService.executeGetChatMember(any(GetChatMember.class))).thenReturn(null);
+
+        assertFalse(memberStatusService.isBanned(-100L, 2L));
+        assertFalse(memberStatusService.isBanned(-100L, 2L));
+
+        verify(messageService, times(2)).executeGetChatMember(any(GetChatMember.class));
+    }
+
+    @Test
+    public void testRecordOnSuccess_BanConfirmedByTelegram() {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        memberStatusService.recordOnSuccess(-100L, 2L, MemberStatusService.KICKED, result);
+        result.complete(true);
+
+        assertTrue(memberStatusService.isBanned(-100L, 2L));
+        verify(messageService, never()).executeGetChatMember(any(GetChatMember.class));
+    }
+
+    @Test
+    public void testRecordOnSuccess_FailedBanInvalidatesEntry() {
+        memberStatusService.record(-100L, 2L, MemberStatusService.MEMBER);
+        memberStatusService.recordOnSuccess(-100L, 2L, MemberStatusService.KICKED,
+                CompletableFuture.failedFuture(new IllegalStateException("Bad Request")));
+
+        assertFalse(memberStatusService.isBanned(-100L, 2L));
+        verify(messageService, times(1)).executeGetChatMember(any(GetChatMember.class));
+    }
+
+    @Test
+    public void testOnChatMemberUpdated_UpdatesStatus() {
+        ChatMemberBanned banned = new ChatMemberBanned();
+        banned.setUser(user(2L));
+        Chat chat = new Chat();
+        chat.setId(-100L);
+        ChatMemberUpdated update = new ChatMemberUpdated();
+        update.setChat(chat);
+        update.setNewChatMember(banned);
+
+        memberStatusService.onChatMemberUpdated(update);
+
+        assertTrue(memberStatusService.isBanned(-100L, 2L));
+        verify(messageService, never()).executeGetChatMember(any(GetChatMember.class));
+    }
+
+    private static User user(Long userId) {
+        User user = new User();
+        user.setId(userId);
+        return user;
+    }
+}
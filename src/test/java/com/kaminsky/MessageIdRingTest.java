@@ -0,0 +1,32 @@
+package com.kaminsky;
+
+import com.kaminsky.util.MessageIdRing;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageIdRingTest {
+
+    @Test
+    void testAdd_OverwritesOldestWhenFull() {
+        MessageIdRing ring = new MessageIdRing(3);
+        for (int id = 1; id <= 5; id++) {
+            ring.add(id, 100 + id);
+        }
+
+        assertEquals(3, ring.size());
+        assertEquals(105, ring.newestDate());
+        assertArrayEquals(new int[]{3, 4, 5}, ring.drain(0));
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    void testDrain_SkipsTooOldMessages() {
+        MessageIdRing ring = new MessageIdRing(10);
+        ring.add(1, 100);
+        ring.add(2, 200);
+        ring.add(3, 300);
+
+        assertArrayEquals(new int[]{2, 3}, ring.drain(200));
+    }
+}
@@ -0,0 +1,90 @@
+package com.kaminsky;
+
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.service.GifFileIdCache;
+import com.kaminsky.service.MessageService;
+import com.kaminsky.service.OutboundPriority;
+import com.kaminsky.service.TelegramApiClient;
+import com.kaminsky.service.UpdateDispatcher;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.telegram.telegrambots.meta.api.methods.send.SendAnimation;
+import org.telegram.telegrambots.meta.api.objects.ApiResponse;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class MessageServiceTest {
+
+    @Mock
+    private TelegramApiClient apiClient;
+
+    @Mock
+    private BotConfig botConfig;
+
+    @Mock
+    private GifFileIdCache gifFileIdCache;
+
+    @Mock
+    private UpdateDispatcher updateDispatcher;
+
+    private MessageService messageService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(botConfig.getMessageRingCapacity()).thenReturn(100);
+        when(botConfig.getMessageMaxAgeHours()).thenReturn(47L);
+        when(botConfig.getPendingUserTtlMinutes()).thenReturn(10L);
+        when(botConfig.getPendingUserMaxMessages()).thenReturn(20);
+        when(updateDispatcher.allowCosmeticReaction()).thenReturn(true);
+        when(gifFileIdCache.get(anyString())).thenReturn("file-1");
+        messageService = new MessageService(apiClient, botConfig, gifFileIdCache, updateDispatcher);
+    }
+
+    @Test
+    public void testSendRandomGif_ShedKeepsFileId() {
+        failGif(new RejectedExecutionException("Косметика отброшена"));
+
+        messageService.sendRandomGif(-100L);
+
+        verify(gifFileIdCache, never()).evict(anyString());
+    }
+
+    @Test
+    public void testSendRandomGif_TooManyRequestsKeepsFileId() {
+        failGif(requestException(429, "Too Many Requests: retry after 5"));
+
+        messageService.sendRandomGif(-100L);
+
+        verify(gifFileIdCache, never()).evict(anyString());
+    }
+
+    @Test
+    public void testSendRandomGif_RejectedFileIdEvicted() {
+        failGif(requestException(400, "Bad Request: wrong file identifier/HTTP URL specified"));
+
+        messageService.sendRandomGif(-100L);
+
+        verify(gifFileIdCache, times(1)).evict(anyString());
+    }
+
+    private void failGif(Throwable failure) {
+        when(apiClient.submit(any(SendAnimation.class), eq(OutboundPriority.COSMETIC)))
+                .thenReturn(CompletableFuture.<Message>failedFuture(failure));
+    }
+
+    private static TelegramApiRequestException requestException(int errorCode, String description) {
+        ApiResponse<?> response = mock(ApiResponse.class);
+        when(response.getErrorCode()).thenReturn(errorCode);
+        when(response.getErrorDescription()).thenReturn(description);
+        return new TelegramApiRequestException("Error sending animation", response);
+    }
+}
@@ -0,0 +1,52 @@
+package com.kaminsky;
+
+import com.kaminsky.finals.MessageTemplates;
+import com.kaminsky.util.MessageTemplate;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageTemplateTest {
+
+    @Test
+    void testRender_HtmlTemplateEscapesValues() {
+        String text = MessageTemplates.BANNED.render(42L, "<Вася & Co>");
+
+        assertEquals("<a href=\"tg://user?id=42\">&lt;Вася &amp; Co&gt;</a> уничтожен", text);
+    }
+
+    @Test
+    void testRender_SameAsConcatenation() {
+        String text = MessageTemplates.WARNED.render(42L, "Вася", (byte) 2);
+
+        assertEquals("<a href=\"tg://user?id=42\">Вася</a> предупрежден. \n" +
+                "Количество предупреждений: 2 из 3", text);
+    }
+
+    @Test
+    void testCompile_ResolvesEmojiOnce() {
+        assertEquals("👉Я не бот👈", MessageTemplates.CONFIRM_BUTTON_TEXT.render());
+        assertEquals("Доброго здоровья, :smiley:! 😃", MessageTemplates.GREETING.render(":smiley:"));
+    }
+
+    @Test
+    void testCompile_BracesWithoutNameStayLiteral() {
+        MessageTemplate template = MessageTemplate.compile("{ } {не имя} {value}", MessageTemplate.Escaping.NONE);
+
+        assertEquals(1, template.placeholderCount());
+        assertEquals("{ } {не имя} {x}", template.render("{x}"));
+    }
+
+    @Test
+    void testAppend_WelcomeTextIsNotParsedOrEscapedAgain() {
+        MessageTemplate welcome = MessageTemplates.WELCOME_HEADER.append("Правила\\: {rules}");
+
+        assertEquals("Добро пожаловать, [Вася\\_Пупкин](tg://user?id=42)\nПравила\\: {rules}",
+                welcome.render("Вася_Пупкин", 42L));
+    }
+
+    @Test
+    void testRender_WrongNumberOfValues() {
+        assertThrows(IllegalArgumentException.class, () -> MessageTemplates.MUTED.render(42L));
+    }
+}
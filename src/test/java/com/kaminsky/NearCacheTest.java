@@ -0,0 +1,76 @@
+package com.kaminsky;
+
+import com.kaminsky.config.NearCacheManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class NearCacheTest {
+
+    private ConcurrentMapCacheManager remoteCacheManager;
+    private StringRedisTemplate redisTemplate;
+    private NearCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        remoteCacheManager = new ConcurrentMapCacheManager("chatInfo");
+        redisTemplate = mock(StringRedisTemplate.class);
+        cacheManager = new NearCacheManager(remoteCacheManager, redisTemplate, Duration.ofMinutes(1), 100);
+    }
+
+    @Test
+    void testGet_ServesFromLocalCopyAfterFirstRead() {
+        remoteCacheManager.getCache("chatInfo").put(1L, "first");
+        Cache cache = cacheManager.getCache("chatInfo");
+
+        assertEquals("first", cache.get(1L).get());
+        remoteCacheManager.getCache("chatInfo").put(1L, "changed behind our back");
+
+        assertEquals("first", cache.get(1L).get());
+    }
+
+    @Test
+    void testPut_PublishesInvalidation() {
+        Cache cache = cacheManager.getCache("chatInfo");
+
+        cache.put(1L, "value");
+
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(NearCacheManager.INVALIDATION_CHANNEL), message.capture());
+        assertTrue(message.getValue().endsWith("|chatInfo|1"));
+        assertEquals("value", remoteCacheManager.getCache("chatInfo").get(1L).get());
+    }
+
+    @Test
+    void testOnInvalidation_DropsLocalCopyFromOtherInstance() {
+        remoteCacheManager.getCache("chatInfo").put(1L, "old");
+        Cache cache = cacheManager.getCache("chatInfo");
+        cache.get(1L);
+        remoteCacheManager.getCache("chatInfo").put(1L, "new");
+
+        cacheManager.onInvalidation("other-instance|chatInfo|1");
+
+        assertEquals("new", cache.get(1L).get());
+    }
+
+    @Test
+    void testOnInvalidation_IgnoresOwnMessages() {
+        Cache cache = cacheManager.getCache("chatInfo");
+        cache.put(1L, "mine");
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(NearCacheManager.INVALIDATION_CHANNEL), message.capture());
+        remoteCacheManager.getCache("chatInfo").put(1L, "changed behind our back");
+
+        cacheManager.onInvalidation(message.getValue());
+
+        assertEquals("mine", cache.get(1L).get());
+    }
+}
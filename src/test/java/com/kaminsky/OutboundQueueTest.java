@@ -0,0 +1,187 @@
+package com.kaminsky;
+
+import com.kaminsky.service.OutboundPriority;
+import com.kaminsky.service.OutboundQueue;
+import com.kaminsky.util.TokenBucket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboundQueueTest {
+
+    private OutboundQueue outboundQueue;
+
+    @BeforeEach
+    void setUp() {
+        outboundQueue = new OutboundQueue(1000, 60000, 1000, 100, 2, 30, 15, Runnable::run);
+    }
+
+    @AfterEach
+    void tearDown() {
+        outboundQueue.shutdown();
+    }
+
+    @Test
+    void testTokenBucket_RefillsOverTime() {
+        long start = 0;
+        TokenBucket bucket = new TokenBucket(2, 2, 1, TimeUnit.SECONDS, start);
+
+        assertTrue(bucket.tryConsume(start));
+        assertTrue(bucket.tryConsume(start));
+        assertFalse(bucket.tryConsume(start));
+        long wait = bucket.nanosUntilAvailable(start);
+        assertTrue(wait > TimeUnit.MILLISECONDS.toNanos(499) && wait <= TimeUnit.MILLISECONDS.toNanos(501));
+
+        long afterRefill = start + TimeUnit.MILLISECONDS.toNanos(501);
+        assertTrue(bucket.tryConsume(afterRefill));
+        assertFalse(bucket.isFull(afterRefill));
+        assertTrue(bucket.isFull(afterRefill + TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    @Test
+    void testEnqueue_BusyChatDoesNotStarveOthers() throws Exception {
+        List<String> executed = new CopyOnWriteArrayList<>();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        outboundQueue.enqueue(-1L, true, OutboundPriority.NORMAL, () -> {
+            executed.add("A1");
+            firstStarted.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+        assertTrue(firstStarted.await(2, TimeUnit.SECONDS));
+
+        for (int i = 2; i <= 5; i++) {
+            String name = "A" + i;
+            outboundQueue.enqueue(-1L, true, OutboundPriority.NORMAL, () -> executed.add(name));
+        }
+        CompletableFuture<Boolean> last = outboundQueue.enqueue(-2L, true, OutboundPriority.NORMAL, () -> executed.add("B1"));
+        release.countDown();
+
+        assertTrue(last.get(2, TimeUnit.SECONDS));
+        assertEquals(List.of("A1", "A2", "B1"), executed.subList(0, 3));
+    }
+
+    @Test
+    void testEnqueue_RejectsWhenFull() throws Exception {
+        OutboundQueue smallQueue = new OutboundQueue(0.001, 0.001, 0.001, 1, 1, 30, 15, Runnable::run);
+        try {
+            smallQueue.enqueue(-1L, true, OutboundPriority.NORMAL, () -> true);
+            smallQueue.enqueue(-1L, true, OutboundPriority.NORMAL, () -> true);
+            CompletableFuture<Boolean> rejected = smallQueue.enqueue(-1L, true, OutboundPriority.NORMAL, () -> true);
+
+            assertTrue(rejected.isCompletedExceptionally());
+        } finally {
+            smallQueue.shutdown();
+        }
+    }
+
+    @Test
+    void testEnqueue_ModerationGoesBeforeNormal() throws Exception {
+        List<String> executed = new CopyOnWriteArrayList<>();
+        CountDownLatch release = blockDispatcher(executed);
+
+        outboundQueue.enqueue(-2L, true, OutboundPriority.NORMAL, () -> executed.add("message"));
+        CompletableFuture<Boolean> ban = outboundQueue.enqueue(-3L, false, OutboundPriority.MODERATION, () -> executed.add("ban"));
+        CompletableFuture<Boolean> last = outboundQueue.enqueue(-2L, true, OutboundPriority.NORMAL, () -> executed.add("message"));
+        release.countDown();
+
+        assertTrue(ban.get(2, TimeUnit.SECONDS));
+        assertTrue(last.get(2, TimeUnit.SECONDS));
+        assertEquals(List.of("blocker", "ban", "message", "message"), executed);
+    }
+
+    @Test
+    void testEnqueue_ShedsCosmeticUnderLoad() throws Exception {
+        List<String> executed = new CopyOnWriteArrayList<>();
+        CountDownLatch release = blockDispatcher(executed);
+
+        outboundQueue.enqueue(-2L, true, OutboundPriority.NORMAL, () -> executed.add("first"));
+        outboundQueue.enqueue(-2L, true, OutboundPriority.NORMAL, () -> executed.add("second"));
+        CompletableFuture<Boolean> gif = outboundQueue.enqueue(-2L, true, OutboundPriority.COSMETIC, () -> executed.add("gif"));
+        release.countDown();
+
+        assertTrue(gif.isCompletedExceptionally());
+        assertEquals(1, outboundQueue.getShedCount());
+    }
+
+    @Test
+    void testEnqueue_FullQueueEvictsCosmetic() throws Exception {
+        OutboundQueue smallQueue = new OutboundQueue(1000, 60000, 1000, 2, 10, 30, 15, Runnable::run);
+        try {
+            List<String> executed = new CopyOnWriteArrayList<>();
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            smallQueue.enqueue(-1L, false, OutboundPriority.NORMAL, () -> {
+                started.countDown();
+                await(release);
+                return true;
+            });
+            assertTrue(started.await(2, TimeUnit.SECONDS));
+
+            CompletableFuture<Boolean> gif = smallQueue.enqueue(-2L, true, OutboundPriority.COSMETIC, () -> executed.add("gif"));
+            smallQueue.enqueue(-2L, true, OutboundPriority.NORMAL, () -> executed.add("message"));
+            CompletableFuture<Boolean> ban = smallQueue.enqueue(-2L, false, OutboundPriority.MODERATION, () -> executed.add("ban"));
+            release.countDown();
+
+            assertTrue(gif.isCompletedExceptionally());
+            assertTrue(ban.get(2, TimeUnit.SECONDS));
+        } finally {
+            smallQueue.shutdown();
+        }
+    }
+
+    @Test
+    void testEnqueue_WaitForWorkerDoesNotCountTowardsTimeout() throws Exception {
+        // пул занят: задача стартует через 1.5 с при таймауте вызова в 1 с
+        OutboundQueue slowPool = new OutboundQueue(1000, 60000, 1000, 10, 10, 30, 1, runnable -> new Thread(() -> {
+            try {
+                Thread.sleep(1500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            runnable.run();
+        }).start());
+        try {
+            CompletableFuture<Boolean> result = slowPool.enqueue(-100L, true, OutboundPriority.NORMAL, () -> true);
+
+            assertTrue(result.get(5, TimeUnit.SECONDS));
+        } finally {
+            slowPool.shutdown();
+        }
+    }
+
+    private CountDownLatch blockDispatcher(List<String> executed) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        outboundQueue.enqueue(-1L, false, OutboundPriority.NORMAL, () -> {
+            executed.add("blocker");
+            started.countDown();
+            await(release);
+            return true;
+        });
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        return release;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
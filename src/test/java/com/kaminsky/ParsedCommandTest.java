@@ -0,0 +1,45 @@
+package com.kaminsky;
+
+import com.kaminsky.util.ParsedCommand;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParsedCommandTest {
+
+    @Test
+    void testParse_WithUsernameAndArguments() {
+        ParsedCommand command = ParsedCommand.parse("/send@sokrytbot  Привет всем! ");
+
+        assertEquals("/send", command.name());
+        assertEquals("sokrytbot", command.botUsername());
+        assertEquals("Привет всем!", command.arguments());
+        assertTrue(command.isAddressedTo("SokrytBot"));
+        assertFalse(command.isAddressedTo("otherbot"));
+    }
+
+    @Test
+    void testParse_WithoutUsername() {
+        ParsedCommand command = ParsedCommand.parse("/start");
+
+        assertEquals("/start", command.name());
+        assertNull(command.botUsername());
+        assertEquals("", command.arguments());
+        assertTrue(command.isAddressedTo("sokrytbot"));
+    }
+
+    @Test
+    void testParse_AtSignInArgumentsOnly() {
+        ParsedCommand command = ParsedCommand.parse("/send пишите на @sokrytbot");
+
+        assertEquals("/send", command.name());
+        assertNull(command.botUsername());
+    }
+
+    @Test
+    void testParse_NotACommand() {
+        assertNull(ParsedCommand.parse(null));
+        assertNull(ParsedCommand.parse("привет"));
+        assertNull(ParsedCommand.parse("/"));
+    }
+}
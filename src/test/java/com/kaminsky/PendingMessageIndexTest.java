@@ -0,0 +1,60 @@
+package com.kaminsky;
+
+import com.kaminsky.util.PendingMessageIndex;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingMessageIndexTest {
+
+    @Test
+    void testAppend_IgnoresUntrackedUsers() {
+        PendingMessageIndex index = new PendingMessageIndex(60000, 10);
+        index.append(-100L, 1L, 10);
+
+        assertEquals(0, index.size());
+        assertArrayEquals(new int[0], index.remove(-100L, 1L));
+    }
+
+    @Test
+    void testRemove_TouchesOnlyOneUser() {
+        PendingMessageIndex index = new PendingMessageIndex(60000, 10);
+        index.track(-100L, 1L, 0);
+        index.track(-100L, 2L, 0);
+        index.track(-200L, 1L, 0);
+        index.append(-100L, 1L, 10);
+        index.append(-100L, 2L, 11);
+        index.append(-100L, 1L, 12);
+        index.append(-200L, 1L, 13);
+
+        assertArrayEquals(new int[]{10, 12}, index.remove(-100L, 1L));
+        assertArrayEquals(new int[]{11}, index.remove(-100L, 2L));
+        assertEquals(1, index.size());
+        assertArrayEquals(new int[]{13}, index.remove(-200L, 1L));
+    }
+
+    @Test
+    void testAppend_RespectsLimitPerUser() {
+        PendingMessageIndex index = new PendingMessageIndex(60000, 3);
+        index.track(-100L, 1L, 0);
+        for (int id = 1; id <= 10; id++) {
+            index.append(-100L, 1L, id);
+        }
+
+        assertArrayEquals(new int[]{1, 2, 3}, index.remove(-100L, 1L));
+    }
+
+    @Test
+    void testEvictExpired_RemovesOnlyStaleEntries() {
+        PendingMessageIndex index = new PendingMessageIndex(1000, 10);
+        index.track(-100L, 1L, 0);
+        index.track(-100L, 2L, 500);
+
+        assertEquals(1, index.evictExpired(1200));
+        assertEquals(1, index.size());
+        index.append(-100L, 1L, 10);
+        index.append(-100L, 2L, 11);
+        assertArrayEquals(new int[0], index.remove(-100L, 1L));
+        assertArrayEquals(new int[]{11}, index.remove(-100L, 2L));
+    }
+}
@@ -0,0 +1,89 @@
+package com.kaminsky;
+
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.service.OutboundPriority;
+import com.kaminsky.service.TelegramApiClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.telegram.telegrambots.meta.api.methods.groupadministration.GetChatMember;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Message;
+import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMember;
+import org.telegram.telegrambots.meta.api.objects.chatmember.ChatMemberMember;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class TelegramApiClientTest {
+
+    @Mock
+    private BotConfig config;
+
+    private TelegramApiClient client;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(config.getToken()).thenReturn("test-token");
+        when(config.getOutboundThreads()).thenReturn(2);
+        when(config.getOutboundTimeoutSeconds()).thenReturn(5L);
+        when(config.getOutboundQueueCapacity()).thenReturn(100);
+        when(config.getOutboundGlobalPerSecond()).thenReturn(1000.0);
+        when(config.getOutboundGroupPerMinute()).thenReturn(60000.0);
+        when(config.getOutboundPrivatePerSecond()).thenReturn(1000.0);
+        when(config.getOutboundShedThreshold()).thenReturn(0);
+        when(config.getOutboundCosmeticMaxAgeSeconds()).thenReturn(30L);
+        client = spy(new TelegramApiClient(config));
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+    }
+
+    @Test
+    void testSubmit_CompletesWithResult() throws Exception {
+        ChatMember member = new ChatMemberMember();
+        GetChatMember getChatMember = new GetChatMember("-100", 1L);
+        doReturn(member).when(client).execute(getChatMember);
+
+        assertSame(member, client.submit(getChatMember).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testSubmit_CompletesWithException() throws Exception {
+        GetChatMember getChatMember = new GetChatMember("-100", 1L);
+        TelegramApiException failure = new TelegramApiException("Bad Request");
+        doThrow(failure).when(client).execute(getChatMember);
+
+        CompletableFuture<ChatMember> future = client.submit(getChatMember);
+
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertSame(failure, thrown.getCause());
+    }
+
+    @Test
+    void testSubmit_ChatMessageGoesThroughQueue() throws Exception {
+        Message sent = new Message();
+        SendMessage sendMessage = new SendMessage("-100", "текст");
+        doReturn(sent).when(client).execute(sendMessage);
+
+        CompletableFuture<Message> shed = client.submit(sendMessage, OutboundPriority.COSMETIC);
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> shed.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, thrown.getCause());
+        assertEquals(1, client.getShedCount());
+
+        assertSame(sent, client.submit(sendMessage, OutboundPriority.NORMAL).get(5, TimeUnit.SECONDS));
+        verify(client, times(1)).execute(any(SendMessage.class));
+    }
+}
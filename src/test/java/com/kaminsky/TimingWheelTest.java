@@ -0,0 +1,72 @@
+package com.kaminsky;
+
+import com.kaminsky.util.TimingWheel;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void testAdvance_ExpiresOnlyDueTimeouts() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 64, 3, 0);
+        wheel.schedule("a", 5000);
+        wheel.schedule("b", 5500);
+        wheel.schedule("c", 9000);
+
+        assertTrue(wheel.advance(4999).isEmpty());
+        assertEquals(List.of("a", "b"), payloads(wheel.advance(5999)).stream().sorted().collect(Collectors.toList()));
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("c"), payloads(wheel.advance(9000)));
+    }
+
+    @Test
+    void testAdvance_CascadesFromUpperLevels() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 4, 3, 0);
+        wheel.schedule("near", 3000);
+        wheel.schedule("middle", 13000);
+        wheel.schedule("far", 50000);
+
+        assertEquals(List.of("near"), payloads(wheel.advance(12999)));
+        assertEquals(List.of("middle"), payloads(wheel.advance(49999)));
+        assertEquals(List.of("far"), payloads(wheel.advance(50000)));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testAdvance_DeadlineBeyondCapacity() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 4, 2, 0);
+        wheel.schedule("far", 100000);
+
+        assertTrue(wheel.advance(99999).isEmpty());
+        assertEquals(List.of("far"), payloads(wheel.advance(100000)));
+    }
+
+    @Test
+    void testCancel_RemovesTimeout() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 64, 3, 0);
+        TimingWheel.Timeout<String> cancelled = wheel.schedule("a", 3000);
+        wheel.schedule("b", 3000);
+
+        assertTrue(wheel.cancel(cancelled));
+        assertFalse(wheel.cancel(cancelled));
+        assertEquals(List.of("b"), payloads(wheel.advance(3000)));
+    }
+
+    @Test
+    void testSchedule_PastDeadlineFiresOnNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 64, 3, 0);
+        wheel.advance(10000);
+        wheel.schedule("late", 2000);
+
+        assertTrue(wheel.advance(10999).isEmpty());
+        assertEquals(List.of("late"), payloads(wheel.advance(11000)));
+    }
+
+    private static List<String> payloads(List<TimingWheel.Timeout<String>> timeouts) {
+        return timeouts.stream().map(TimingWheel.Timeout::payload).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,54 @@
+package com.kaminsky;
+
+import com.kaminsky.service.UpdateBatchStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateBatchStatsTest {
+
+    private UpdateBatchStats stats;
+
+    @BeforeEach
+    void setUp() {
+        stats = new UpdateBatchStats();
+    }
+
+    @Test
+    void testRecordBatch_SizesAndIntervals() {
+        stats.recordBatch(3, 1_000);
+        stats.recordBatch(10, 1_300);
+        stats.recordBatch(2, 2_000);
+
+        UpdateBatchStats.Snapshot snapshot = stats.snapshotAndReset();
+
+        assertEquals(3, snapshot.batches());
+        assertEquals(15, snapshot.updates());
+        assertEquals(10, snapshot.maxBatchSize());
+        assertEquals(5, snapshot.averageBatchSize());
+        assertEquals(700, snapshot.maxIntervalMillis());
+        assertEquals(1_000, snapshot.totalIntervalMillis());
+    }
+
+    @Test
+    void testSnapshotAndReset_IntervalContinuesAcrossReset() {
+        stats.recordBatch(1, 1_000);
+        stats.snapshotAndReset();
+
+        stats.recordBatch(4, 1_500);
+        UpdateBatchStats.Snapshot snapshot = stats.snapshotAndReset();
+
+        assertEquals(1, snapshot.batches());
+        assertEquals(500, snapshot.averageIntervalMillis());
+    }
+
+    @Test
+    void testSnapshotAndReset_Empty() {
+        UpdateBatchStats.Snapshot snapshot = stats.snapshotAndReset();
+
+        assertEquals(0, snapshot.batches());
+        assertEquals(0, snapshot.averageBatchSize());
+        assertEquals(0, snapshot.averageIntervalMillis());
+    }
+}
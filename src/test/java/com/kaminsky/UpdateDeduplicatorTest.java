@@ -0,0 +1,88 @@
+package com.kaminsky;
+
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.service.UpdateDeduplicator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+public class UpdateDeduplicatorTest {
+
+    @Mock
+    private BotConfig botConfig;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(botConfig.getDedupWindowSize()).thenReturn(1024);
+        when(botConfig.getDedupCallbackIds()).thenReturn(100);
+        when(botConfig.getDedupRedisTtlSeconds()).thenReturn(60L);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+    }
+
+    @Test
+    public void testIsDuplicate_SameUpdateIdTwice() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(botConfig, redisTemplate);
+
+        assertFalse(deduplicator.isDuplicate(update(1, null)));
+        assertTrue(deduplicator.isDuplicate(update(1, null)));
+        assertFalse(deduplicator.isDuplicate(update(2, null)));
+        assertEquals(1, deduplicator.getDuplicateCount());
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    public void testIsDuplicate_SameCallbackInAnotherUpdate() {
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(botConfig, redisTemplate);
+
+        assertFalse(deduplicator.isDuplicate(update(10, "cb-1")));
+        assertTrue(deduplicator.isDuplicate(update(11, "cb-1")));
+    }
+
+    @Test
+    public void testIsDuplicate_SeenByAnotherInstance() {
+        when(botConfig.isDedupRedisEnabled()).thenReturn(true);
+        when(valueOperations.setIfAbsent(eq("sokrytbot:update:5"), eq("1"), any(Duration.class))).thenReturn(false);
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(botConfig, redisTemplate);
+
+        assertTrue(deduplicator.isDuplicate(update(5, null)));
+    }
+
+    @Test
+    public void testIsDuplicate_RedisUnavailable() {
+        when(botConfig.isDedupRedisEnabled()).thenReturn(true);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenThrow(new RuntimeException("connection refused"));
+        UpdateDeduplicator deduplicator = new UpdateDeduplicator(botConfig, redisTemplate);
+
+        assertFalse(deduplicator.isDuplicate(update(6, null)));
+    }
+
+    private static Update update(int updateId, String callbackId) {
+        Update update = new Update();
+        update.setUpdateId(updateId);
+        if (callbackId != null) {
+            CallbackQuery callbackQuery = new CallbackQuery();
+            callbackQuery.setId(callbackId);
+            update.setCallbackQuery(callbackQuery);
+        }
+        return update;
+    }
+}
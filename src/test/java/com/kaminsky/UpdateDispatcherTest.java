@@ -0,0 +1,215 @@
+package com.kaminsky;
+
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.service.UpdateClass;
+import com.kaminsky.service.UpdateDispatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class UpdateDispatcherTest {
+
+    private UpdateDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        BotConfig config = mock(BotConfig.class);
+        when(config.getDispatcherStripes()).thenReturn(4);
+        when(config.getDispatcherQueueCapacity()).thenReturn(100);
+        dispatcher = new UpdateDispatcher(config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testDispatch_SameChatKeepsOrder() throws InterruptedException {
+        List<Integer> processed = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(50);
+
+        for (int i = 0; i < 50; i++) {
+            int number = i;
+            dispatcher.dispatch(-100L, UpdateClass.CRITICAL, System.currentTimeMillis(), () -> {
+                processed.add(number);
+                done.countDown();
+            });
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, processed.get(i));
+        }
+    }
+
+    @Test
+    void testDispatch_SlowChatDoesNotBlockOtherStripe() throws InterruptedException {
+        Long slowChatId = -100L;
+        Long fastChatId = -101L;
+        while (dispatcher.stripeIndex(fastChatId) == dispatcher.stripeIndex(slowChatId)) {
+            fastChatId--;
+        }
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(1);
+
+        dispatcher.dispatch(slowChatId, UpdateClass.CRITICAL, System.currentTimeMillis(), () -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        dispatcher.dispatch(fastChatId, UpdateClass.CRITICAL, System.currentTimeMillis(), fastDone::countDown);
+
+        assertTrue(fastDone.await(2, TimeUnit.SECONDS));
+        release.countDown();
+    }
+
+    @Test
+    void testDispatch_FailingTaskDoesNotStopStripe() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+
+        dispatcher.dispatch(1L, UpdateClass.CRITICAL, System.currentTimeMillis(), () -> {
+            throw new IllegalStateException("boom");
+        });
+        dispatcher.dispatch(1L, UpdateClass.CRITICAL, System.currentTimeMillis(), done::countDown);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testShutdown_DrainsAcceptedUpdates() {
+        BotConfig config = mock(BotConfig.class);
+        when(config.getDispatcherStripes()).thenReturn(2);
+        when(config.getDispatcherQueueCapacity()).thenReturn(100);
+        when(config.getDispatcherShutdownAwaitSeconds()).thenReturn(5L);
+        UpdateDispatcher draining = new UpdateDispatcher(config);
+        AtomicInteger processed = new AtomicInteger();
+
+        for (int i = 0; i < 20; i++) {
+            draining.dispatch((long) i, UpdateClass.CRITICAL, System.currentTimeMillis(), () -> {
+                sleepQuietly(10);
+                processed.incrementAndGet();
+            });
+        }
+        draining.shutdown();
+
+        assertEquals(20, processed.get());
+        assertFalse(draining.dispatch(1L, UpdateClass.CRITICAL, System.currentTimeMillis(), processed::incrementAndGet));
+    }
+
+    @Test
+    void testDispatch_NormalDroppedWhenQueueFull() throws InterruptedException {
+        UpdateDispatcher bounded = boundedDispatcher(true, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            bounded.dispatch(1L, UpdateClass.CRITICAL, System.currentTimeMillis(), () -> {
+                started.countDown();
+                awaitQuietly(release);
+            });
+            assertTrue(started.await(2, TimeUnit.SECONDS));
+
+            assertTrue(bounded.dispatch(1L, UpdateClass.NORMAL, System.currentTimeMillis(), () -> { }));
+            assertFalse(bounded.dispatch(1L, UpdateClass.NORMAL, System.currentTimeMillis(), () -> { }));
+            assertEquals(1, bounded.getDroppedNormalCount());
+        } finally {
+            release.countDown();
+            bounded.shutdown();
+        }
+    }
+
+    @Test
+    void testDispatch_CriticalWaitsInsteadOfDropping() throws InterruptedException {
+        UpdateDispatcher bounded = boundedDispatcher(true, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch criticalDone = new CountDownLatch(1);
+        try {
+            bounded.dispatch(1L, UpdateClass.CRITICAL, System.currentTimeMillis(), () -> {
+                started.countDown();
+                awaitQuietly(release);
+            });
+            assertTrue(started.await(2, TimeUnit.SECONDS));
+            bounded.dispatch(1L, UpdateClass.NORMAL, System.currentTimeMillis(), () -> { });
+
+            Thread producer = new Thread(() ->
+                    bounded.dispatch(1L, UpdateClass.CRITICAL, System.currentTimeMillis(), criticalDone::countDown));
+            producer.start();
+            assertFalse(criticalDone.await(200, TimeUnit.MILLISECONDS));
+
+            release.countDown();
+            assertTrue(criticalDone.await(2, TimeUnit.SECONDS));
+            assertEquals(0, bounded.getDroppedNormalCount());
+        } finally {
+            release.countDown();
+            bounded.shutdown();
+        }
+    }
+
+    @Test
+    void testAllowCosmeticReaction_ShedWhenLagging() throws InterruptedException {
+        UpdateDispatcher bounded = boundedDispatcher(false, 5);
+        AtomicBoolean freshAllowed = new AtomicBoolean();
+        AtomicBoolean staleAllowed = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(2);
+        try {
+            long now = System.currentTimeMillis();
+            bounded.dispatch(1L, UpdateClass.NORMAL, now, () -> {
+                freshAllowed.set(bounded.allowCosmeticReaction());
+                done.countDown();
+            });
+            bounded.dispatch(1L, UpdateClass.NORMAL, now - 60_000, () -> {
+                staleAllowed.set(bounded.allowCosmeticReaction());
+                done.countDown();
+            });
+
+            assertTrue(done.await(2, TimeUnit.SECONDS));
+            assertTrue(freshAllowed.get());
+            assertFalse(staleAllowed.get());
+            assertEquals(1, bounded.getShedCosmeticCount());
+            assertTrue(bounded.getMaxLagMillis() >= 60_000);
+            assertTrue(bounded.allowCosmeticReaction());
+        } finally {
+            bounded.shutdown();
+        }
+    }
+
+    private static UpdateDispatcher boundedDispatcher(boolean dropNormalWhenFull, long cosmeticMaxLagSeconds) {
+        BotConfig config = mock(BotConfig.class);
+        when(config.getDispatcherStripes()).thenReturn(1);
+        when(config.getDispatcherQueueCapacity()).thenReturn(1);
+        when(config.isIngestionDropNormalWhenFull()).thenReturn(dropNormalWhenFull);
+        when(config.getIngestionShedThreshold()).thenReturn(100);
+        when(config.getIngestionCosmeticMaxLagSeconds()).thenReturn(cosmeticMaxLagSeconds);
+        return new UpdateDispatcher(config);
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
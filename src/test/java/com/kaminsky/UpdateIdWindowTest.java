@@ -0,0 +1,75 @@
+package com.kaminsky;
+
+import com.kaminsky.util.UpdateIdWindow;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpdateIdWindowTest {
+
+    @Test
+    void testMarkIfNew_RepeatedIdRejected() {
+        UpdateIdWindow window = new UpdateIdWindow(64);
+
+        assertTrue(window.markIfNew(100));
+        assertTrue(window.markIfNew(101));
+        assertFalse(window.markIfNew(100));
+        assertFalse(window.markIfNew(101));
+    }
+
+    @Test
+    void testMarkIfNew_OutOfOrderInsideWindow() {
+        UpdateIdWindow window = new UpdateIdWindow(64);
+
+        assertTrue(window.markIfNew(110));
+        assertTrue(window.markIfNew(105));
+        assertFalse(window.markIfNew(105));
+        assertEquals(110, window.getMaxId());
+    }
+
+    @Test
+    void testMarkIfNew_SlotReusedAfterWindowMoves() {
+        UpdateIdWindow window = new UpdateIdWindow(64);
+
+        assertTrue(window.markIfNew(1));
+        assertTrue(window.markIfNew(64));
+        // 65 попадает в ячейку id 1, но это другое обновление
+        assertTrue(window.markIfNew(65));
+        assertFalse(window.markIfNew(65));
+    }
+
+    @Test
+    void testMarkIfNew_NewSequenceFarBelow() {
+        UpdateIdWindow window = new UpdateIdWindow(64);
+
+        assertTrue(window.markIfNew(1_000_000));
+        assertTrue(window.markIfNew(500));
+        assertEquals(500, window.getMaxId());
+        assertFalse(window.markIfNew(500));
+    }
+
+    @Test
+    void testMarkIfNew_MatchesSetWithinWindow() {
+        UpdateIdWindow window = new UpdateIdWindow(256);
+        Set<Long> seen = new HashSet<>();
+        Random random = new Random(42);
+        long max = 0;
+
+        for (int i = 0; i < 20_000; i++) {
+            long id = random.nextInt(3) == 0 ? Math.max(1, max - random.nextInt(200)) : max + 1 + random.nextInt(5);
+            max = Math.max(max, id);
+            boolean expected = seen.add(id);
+            assertEquals(expected, window.markIfNew(id), "id " + id);
+        }
+    }
+
+    @Test
+    void testConstructor_RejectsBadSize() {
+        assertThrows(IllegalArgumentException.class, () -> new UpdateIdWindow(100));
+        assertThrows(IllegalArgumentException.class, () -> new UpdateIdWindow(32));
+    }
+}
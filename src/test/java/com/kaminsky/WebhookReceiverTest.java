@@ -0,0 +1,118 @@
+package com.kaminsky;
+
+import com.kaminsky.config.BotConfig;
+import com.kaminsky.service.WebhookReceiver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class WebhookReceiverTest {
+
+    private static final String PATH = "/telegram/webhook";
+    private static final String SECRET = "test-secret";
+    private static final String RECORDED_UPDATE = "{\"update_id\":1001,\"message\":{\"message_id\":7,\"date\":1700000000," +
+            "\"chat\":{\"id\":-100123,\"type\":\"supergroup\",\"title\":\"Тест\"}," +
+            "\"from\":{\"id\":42,\"is_bot\":false,\"first_name\":\"Иван\"},\"text\":\"привет\"}}";
+
+    @Mock
+    private BotConfig botConfig;
+
+    private WebhookReceiver receiver;
+    private final BlockingQueue<Update> received = new LinkedBlockingQueue<>();
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        when(botConfig.getWebhookPort()).thenReturn(0);
+        when(botConfig.getWebhookPath()).thenReturn(PATH);
+        when(botConfig.getWebhookSecretToken()).thenReturn(SECRET);
+        when(botConfig.getWebhookQueueCapacity()).thenReturn(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        receiver.stop();
+    }
+
+    @Test
+    public void testPost_RecordedUpdateDelivered() throws Exception {
+        receiver = new WebhookReceiver(botConfig);
+        receiver.start(received::add);
+
+        HttpResponse<String> response = post(SECRET, RECORDED_UPDATE);
+
+        assertEquals(200, response.statusCode());
+        Update update = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(update);
+        assertEquals(1001, update.getUpdateId());
+        assertEquals(-100123L, update.getMessage().getChatId());
+        assertEquals("привет", update.getMessage().getText());
+    }
+
+    @Test
+    public void testPost_WrongSecretRejected() throws Exception {
+        receiver = new WebhookReceiver(botConfig);
+        receiver.start(received::add);
+
+        HttpResponse<String> response = post("wrong", RECORDED_UPDATE);
+
+        assertEquals(401, response.statusCode());
+        assertEquals(1, receiver.getUnauthorizedCount());
+        assertNull(received.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testPost_QueueFullReturns503() throws Exception {
+        receiver = new WebhookReceiver(botConfig);
+        BlockingQueue<Update> blocked = new LinkedBlockingQueue<>();
+        Object gate = new Object();
+        receiver.start(update -> {
+            blocked.add(update);
+            synchronized (gate) {
+                try {
+                    gate.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        assertEquals(200, post(SECRET, RECORDED_UPDATE).statusCode());
+        assertNotNull(blocked.poll(5, TimeUnit.SECONDS));
+        assertEquals(200, post(SECRET, RECORDED_UPDATE).statusCode());
+        assertEquals(503, post(SECRET, RECORDED_UPDATE).statusCode());
+        assertEquals(1, receiver.getRejectedCount());
+    }
+
+    @Test
+    public void testStart_WithoutSecretFails() {
+        when(botConfig.getWebhookSecretToken()).thenReturn("");
+        receiver = new WebhookReceiver(botConfig);
+
+        assertThrows(IllegalStateException.class, () -> receiver.start(received::add));
+    }
+
+    private HttpResponse<String> post(String secret, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + receiver.getPort() + PATH))
+                .header("X-Telegram-Bot-Api-Secret-Token", secret)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
@@ -0,0 +1,72 @@
+package com.kaminsky.benchmark;
+
+import com.kaminsky.util.MarkdownEscaper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение однопроходного экранирования с прежней цепочкой String.replace.
+ * Запускается через main этого класса с тестовым classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkdownEscaperBenchmark {
+
+    @Param({"plain", "welcome", "dense"})
+    public String kind;
+
+    private String text;
+
+    @Setup
+    public void setUp() {
+        switch (kind) {
+            case "plain" -> text = "Добро пожаловать в наш чат, здесь обсуждают все подряд и никто не ругается";
+            case "welcome" -> text = "Добро пожаловать! Правила чата:\n" +
+                    "1. Без спама и рекламы.\n" +
+                    "2. **Уважайте** друг друга.\n" +
+                    "3. Полезные ссылки: [сайт](https://example.com), [канал](https://t.me/example).\n" +
+                    "~Флуд~ запрещен, за нарушения - бан!";
+            default -> text = "_*~`>#+-=|{}.!".repeat(8);
+        }
+    }
+
+    @Benchmark
+    public String singlePass() {
+        return MarkdownEscaper.escape(text);
+    }
+
+    @Benchmark
+    public String chainedReplace() {
+        return text
+                .replace("_", "\\_")
+                .replace("*", "\\*")
+                .replace("~", "\\~")
+                .replace("`", "\\`")
+                .replace(">", "\\>")
+                .replace("#", "\\#")
+                .replace("+", "\\+")
+                .replace("-", "\\-")
+                .replace("=", "\\=")
+                .replace("|", "\\|")
+                .replace("{", "\\{")
+                .replace("}", "\\}")
+                .replace(".", "\\.")
+                .replace("!", "\\!");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(MarkdownEscaperBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}